@@ -1,23 +1,74 @@
 package tetris;
 
+import java.util.SplittableRandom;
+
+import tetris.feature.IncrementalFeatures;
+
 public class NextState {
-    private int[][] field = new int[State.ROWS][State.COLS];
+    //bitboard - one mask per row, bit c set means column c is filled
+    private int[] rows = new int[State.ROWS];
+    //the same bitboard by column, bit r set means row r is filled
+    private int[] cols = new int[State.COLS];
     private int[] top = new int[State.COLS];
-    private static int rowsCleared = 0;
+    //cells that read as filled on turn 1 - the state's first piece, and every piece placed
+    //while the state is on turn 1 - as the turn-number field used to show them
+    private int[] turnOneRows = new int[State.ROWS];
+    private boolean placesOnTurnOne;
 
-    private int[][][] pBottom = State.getpBottom();
-    private int[][] pHeight = State.getpHeight();
-    private int[][] pWidth = State.getpWidth();
-    private int[][][] pTop = State.getpTop();
+    private static final int[] DATA = PieceTable.DATA;
 
     private int nextPiece;
-    private int turn;
     private int cleared;
 
+    //Zobrist hash of the filled cells - xor of the key of every filled cell
+    private long hash;
+    //one random key per cell [row * COLS + col], fixed so hashes are the same every run
+    private static final long[] CELL_KEYS = new long[State.ROWS * State.COLS];
+    //multiplied by the rows cleared so far, which some features read
+    private static final long CLEARED_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x3243L);
+        for (int i = 0; i < CELL_KEYS.length; i++) {
+            CELL_KEYS[i] = random.nextLong();
+        }
+        CLEARED_KEY = random.nextLong() | 1;
+    }
+
     boolean lost = false;
 
-    public int[][] getField() {
-        return field;
+    //feature values kept up to date with the board, null if not tracked
+    private IncrementalFeatures incremental;
+
+    //undo log - one level per applied move, preallocated so search never allocates
+    public static final int MAX_DEPTH = 16;
+    private int depth = 0;
+    //PieceTable record of the placement
+    private int[] logRecord = new int[MAX_DEPTH];
+    private int[] logHeight = new int[MAX_DEPTH];
+    //tops of the piece columns, or of every column if rows were cleared
+    private int[] logTop = new int[MAX_DEPTH * State.COLS];
+    //rows removed by the move, in the order they were cleared
+    private int[] logClearedCount = new int[MAX_DEPTH];
+    private int[] logClearedRows = new int[MAX_DEPTH * 4];
+    private int[] logClearedTurnOne = new int[MAX_DEPTH * 4];
+    private long[] logHash = new long[MAX_DEPTH];
+
+    public int[] getRows() {
+        return rows;
+    }
+
+    public int[] getCols() {
+        return cols;
+    }
+
+    public boolean isFilled(int row, int col) {
+        return (rows[row] & (1 << col)) != 0;
+    }
+
+    //true if the cell was filled on turn 1
+    public boolean isTurnOne(int row, int col) {
+        return (turnOneRows[row] & (1 << col)) != 0;
     }
 
     public int[] getTop() {
@@ -32,20 +83,72 @@ public class NextState {
         return lost;
     }
 
+    public int getNextPiece() {
+        return nextPiece;
+    }
+
+    //hash of the board and the rows cleared - equal positions always hash the same
+    public long getHash() {
+        return hash ^ (cleared * CLEARED_KEY);
+    }
+
+    public IncrementalFeatures getIncrementalFeatures() {
+        return incremental;
+    }
+
+    //starts keeping features up to date with every move, or stops if null
+    public void setIncrementalFeatures(IncrementalFeatures incremental) {
+        this.incremental = incremental;
+        if (incremental != null) {
+            incremental.touchAll();
+        }
+    }
+
+    //number of moves that can still be undone
+    public int getDepth() {
+        return depth;
+    }
+
     //constructor
+    public NextState() {
+    }
+
     public NextState(State s) {
-        for (int i = 0; i < State.ROWS; i++) {
-            for (int j = 0; j < State.COLS; j++) {
-                field[i][j] = s.getField()[i][j];
-            }
-        }
+        reset(s);
+    }
 
-        for (int i = 0; i < State.COLS; i++) {
-            top[i] = s.getTop()[i];
-        }
+    //load the board of s, dropping any moves applied so far
+    public void reset(State s) {
+        System.arraycopy(s.getRows(), 0, rows, 0, State.ROWS);
+        System.arraycopy(s.getTop(), 0, top, 0, State.COLS);
+        System.arraycopy(s.getCols(), 0, cols, 0, State.COLS);
+        System.arraycopy(s.getTurnOneRows(), 0, turnOneRows, 0, State.ROWS);
+        placesOnTurnOne = s.getTurnNumber() == 1;
         nextPiece = s.getNextPiece();
-        turn = s.getTurnNumber();
         cleared = s.getRowsCleared();
+        lost = false;
+        depth = 0;
+        hash = hashRows(rows);
+        if (incremental != null) {
+            incremental.touchAll();
+        }
+    }
+
+    //copy the current board of s, dropping any moves applied so far - s keeps its undo log
+    public void reset(NextState s) {
+        System.arraycopy(s.rows, 0, rows, 0, State.ROWS);
+        System.arraycopy(s.top, 0, top, 0, State.COLS);
+        System.arraycopy(s.cols, 0, cols, 0, State.COLS);
+        System.arraycopy(s.turnOneRows, 0, turnOneRows, 0, State.ROWS);
+        placesOnTurnOne = s.placesOnTurnOne;
+        nextPiece = s.nextPiece;
+        cleared = s.cleared;
+        hash = s.hash;
+        lost = s.lost;
+        depth = 0;
+        if (incremental != null) {
+            incremental.touchAll();
+        }
     }
 
     //make a move based on the move index - its order in the legalMoves list
@@ -58,67 +161,187 @@ public class NextState {
         makeMove(move[State.ORIENT],move[State.SLOT]);
     }
 
-    //returns false if you lose - true otherwise
+    //makes the move without recording it - sets lost if the move loses
     public void makeMove(int orient, int slot) {
-        //height if the first column makes contact
-        int height = top[slot] - pBottom[nextPiece][orient][0];
-        //for each column beyond the first in the piece
-        for (int c = 1; c < pWidth[nextPiece][orient]; c++) {
-            if (slot + c >= 10) {
-                System.out.println("SLOT and C are awry");
+        if (!place(PieceTable.record(nextPiece, orient, slot), false)) {
+            lost = true;
+        }
+    }
+
+    //applies the move-th legal move of the next piece - see apply(orient, slot)
+    public boolean apply(int move) {
+        return place(PieceTable.record(nextPiece, move), true);
+    }
+
+    //places the next piece so it can be undone - returns false and leaves the board alone if it loses
+    public boolean apply(int orient, int slot) {
+        return place(PieceTable.record(nextPiece, orient, slot), true);
+    }
+
+    //places the given piece so it can be undone - returns false and leaves the board alone if it loses
+    public boolean apply(int piece, int orient, int slot) {
+        return place(PieceTable.record(piece, orient, slot), true);
+    }
+
+    //applies a PieceTable placement of any piece - see apply(orient, slot)
+    public boolean applyPlacement(int placement) {
+        return place(placement * PieceTable.STRIDE, true);
+    }
+
+    //takes back the last applied move
+    public void undo() {
+        depth--;
+        int rec = logRecord[depth];
+        int height = logHeight[depth];
+        int count = logClearedCount[depth];
+
+        //put the cleared rows back - last cleared first
+        for (int k = count - 1; k >= 0; k--) {
+            int r = logClearedRows[depth * 4 + k];
+            System.arraycopy(rows, r, rows, r + 1, State.ROWS - 1 - r);
+            rows[r] = State.FULL_ROW;
+            System.arraycopy(turnOneRows, r, turnOneRows, r + 1, State.ROWS - 1 - r);
+            turnOneRows[r] = logClearedTurnOne[depth * 4 + k];
+            int below = (1 << r) - 1;
+            for (int c = 0; c < State.COLS; c++) {
+                cols[c] = (cols[c] & below) | ((cols[c] & ~below) << 1) | (1 << r);
             }
-            height = Math.max(height, top[slot + c] - pBottom[nextPiece][orient][c]);
         }
 
-        //check if game ended
-        if (height + pHeight[nextPiece][orient] >= State.ROWS) {
-            lost = true;
+        //take the piece out
+        for (int h = 0; h < DATA[rec + PieceTable.HEIGHT]; h++) {
+            rows[height + h] ^= DATA[rec + PieceTable.MASK + h];
+            if (placesOnTurnOne) {
+                turnOneRows[height + h] &= ~DATA[rec + PieceTable.MASK + h];
+            }
+        }
+        int slot = DATA[rec + PieceTable.SLOT];
+        for (int c = 0; c < DATA[rec + PieceTable.WIDTH]; c++) {
+            int b = DATA[rec + PieceTable.BOTTOM + c];
+            cols[slot + c] ^= ((1 << (DATA[rec + PieceTable.TOP + c] - b)) - 1) << (height + b);
+        }
+
+        hash = logHash[depth];
+
+        //restore top
+        int base = depth * State.COLS;
+        if (count > 0) {
+            System.arraycopy(logTop, base, top, 0, State.COLS);
+            cleared -= count;
+        } else {
+            System.arraycopy(logTop, base, top, slot, DATA[rec + PieceTable.WIDTH]);
+        }
+
+        updateFeatures(rec, height, count);
+    }
+
+    //Zobrist hash of a whole board
+    private static long hashRows(int[] rows) {
+        long h = 0;
+        for (int r = 0; r < State.ROWS; r++) {
+            h ^= hashRow(r, rows[r]);
+        }
+        return h;
+    }
+
+    //xor of the keys of the cells of mask in row r
+    private static long hashRow(int r, int mask) {
+        long h = 0;
+        for (; mask != 0; mask &= mask - 1) {
+            h ^= CELL_KEYS[r * State.COLS + Integer.numberOfTrailingZeros(mask)];
+        }
+        return h;
+    }
+
+    //marks what a placement or undo changed for the tracked features
+    private void updateFeatures(int rec, int height, int count) {
+        if (incremental == null) {
             return;
         }
+        if (count > 0) {
+            incremental.touchAll();
+        } else {
+            incremental.touch(DATA[rec + PieceTable.SLOT], DATA[rec + PieceTable.WIDTH],
+                    height, DATA[rec + PieceTable.HEIGHT]);
+        }
+    }
 
+    private boolean place(int rec, boolean record) {
+        int slot = DATA[rec + PieceTable.SLOT];
+        int width = DATA[rec + PieceTable.WIDTH];
+        int pieceHeight = DATA[rec + PieceTable.HEIGHT];
+        //height at which the piece comes to rest
+        int height = PieceTable.landingHeight(rec, top);
 
-        //for each column in the piece - fill in the appropriate blocks
-        for (int i = 0; i < pWidth[nextPiece][orient]; i++) {
+        //check if game ended
+        if (height + pieceHeight >= State.ROWS) {
+            return false;
+        }
 
-            //from bottom to top of brick
-            for (int h = height + pBottom[nextPiece][orient][i]; h < height + pTop[nextPiece][orient][i]; h++) {
-                field[h][i + slot] = turn;
-            }
+        int base = depth * State.COLS;
+        if (record) {
+            logRecord[depth] = rec;
+            logHeight[depth] = height;
+            logHash[depth] = hash;
+            System.arraycopy(top, 0, logTop, base, State.COLS);
         }
 
-        //adjust top
-        for (int c = 0; c < pWidth[nextPiece][orient]; c++) {
-            top[slot + c] = height + pTop[nextPiece][orient][c];
+        //for each row of the piece - or its mask into the board
+        for (int h = 0; h < pieceHeight; h++) {
+            rows[height + h] |= DATA[rec + PieceTable.MASK + h];
+            hash ^= hashRow(height + h, DATA[rec + PieceTable.MASK + h]);
+            if (placesOnTurnOne) {
+                turnOneRows[height + h] |= DATA[rec + PieceTable.MASK + h];
+            }
         }
 
-        int rowsCleared = 0;
+        //adjust top and the column masks
+        for (int c = 0; c < width; c++) {
+            int t = DATA[rec + PieceTable.TOP + c];
+            int b = DATA[rec + PieceTable.BOTTOM + c];
+            top[slot + c] = height + t;
+            cols[slot + c] |= ((1 << (t - b)) - 1) << (height + b);
+        }
 
+        int count = 0;
         //check for full rows - starting at the top
-        for (int r = height + pHeight[nextPiece][orient] - 1; r >= height; r--) {
-            //check all columns in the row
-            boolean full = true;
-            for (int c = 0; c < State.COLS; c++) {
-                if (field[r][c] == 0) {
-                    full = false;
-                    break;
-                }
-            }
+        for (int r = height + pieceHeight - 1; r >= height; r--) {
             //if the row was full - remove it and slide above stuff down
-            if (full) {
-                rowsCleared++;
+            if (rows[r] == State.FULL_ROW) {
+                if (record) {
+                    logClearedRows[depth * 4 + count] = r;
+                    logClearedTurnOne[depth * 4 + count] = turnOneRows[r];
+                }
+                count++;
                 cleared++;
-                //for each column
+                //slide down all rows above - the top row is always empty
+                System.arraycopy(rows, r + 1, rows, r, State.ROWS - 1 - r);
+                rows[State.ROWS - 1] = 0;
+                System.arraycopy(turnOneRows, r + 1, turnOneRows, r, State.ROWS - 1 - r);
+                turnOneRows[State.ROWS - 1] = 0;
+                //drop row r from each column and lower the top
+                int below = (1 << r) - 1;
                 for (int c = 0; c < State.COLS; c++) {
-
-                    //slide down all bricks
-                    for (int i = r; i < top[c]; i++) {
-                        field[i][c] = field[i + 1][c];
-                    }
-                    //lower the top
-                    top[c]--;
-                    while (top[c] >= 1 && field[top[c] - 1][c] == 0) top[c]--;
+                    cols[c] = (cols[c] & below) | ((cols[c] >>> 1) & ~below);
+                    top[c] = 32 - Integer.numberOfLeadingZeros(cols[c]);
                 }
             }
         }
+
+        if (count > 0) {
+            //every cell above the cleared rows moved down
+            hash = hashRows(rows);
+        }
+
+        if (record) {
+            logClearedCount[depth] = count;
+            if (count == 0) {
+                //only the piece columns changed - keep just those tops
+                System.arraycopy(logTop, base + slot, logTop, base, width);
+            }
+            depth++;
+        }
+        updateFeatures(rec, height, count);
+        return true;
     }
 }
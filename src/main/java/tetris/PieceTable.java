@@ -0,0 +1,89 @@
+package tetris;
+
+//every (piece, orient, slot) placement flattened into one int array - STRIDE ints each
+//placements go piece by piece in State.legalMoves() order, so the i-th legal move of a
+//piece is placement PIECE_START[piece] + i
+public final class PieceTable {
+    //offsets inside a record
+    public static final int WIDTH = 0;
+    public static final int HEIGHT = 1;
+    public static final int SLOT = 2;
+    public static final int ORIENT = 3;
+    //lowest filled row of each piece column, relative to the piece
+    public static final int BOTTOM = 4;
+    //highest filled row + 1 of each piece column, relative to the piece
+    public static final int TOP = 8;
+    //row masks of the piece from its bottom row up, already shifted by slot
+    public static final int MASK = 12;
+    public static final int STRIDE = 16;
+
+    //number of placements over all pieces
+    public static final int SIZE;
+    //first placement of each piece
+    public static final int[] PIECE_START = new int[State.N_PIECES + 1];
+    //first placement of each piece orientation [piece * 4 + orient]
+    private static final int[] ORIENT_START = new int[State.N_PIECES * 4];
+    public static final int[] DATA;
+
+    static {
+        int[] pOrients = State.getpOrients();
+        int[][] pWidth = State.getpWidth();
+        int[][] pHeight = State.getpHeight();
+        int[][][] pBottom = State.getpBottom();
+        int[][][] pTop = State.getpTop();
+
+        int n = 0;
+        for (int p = 0; p < State.N_PIECES; p++) {
+            PIECE_START[p] = n;
+            for (int o = 0; o < pOrients[p]; o++) {
+                ORIENT_START[p * 4 + o] = n;
+                n += State.COLS + 1 - pWidth[p][o];
+            }
+        }
+        PIECE_START[State.N_PIECES] = n;
+        SIZE = n;
+
+        DATA = new int[SIZE * STRIDE];
+        for (int p = 0; p < State.N_PIECES; p++) {
+            for (int o = 0; o < pOrients[p]; o++) {
+                for (int slot = 0; slot < State.COLS + 1 - pWidth[p][o]; slot++) {
+                    int base = (ORIENT_START[p * 4 + o] + slot) * STRIDE;
+                    DATA[base + WIDTH] = pWidth[p][o];
+                    DATA[base + HEIGHT] = pHeight[p][o];
+                    DATA[base + SLOT] = slot;
+                    DATA[base + ORIENT] = o;
+                    for (int c = 0; c < pWidth[p][o]; c++) {
+                        DATA[base + BOTTOM + c] = pBottom[p][o][c];
+                        DATA[base + TOP + c] = pTop[p][o][c];
+                        for (int h = pBottom[p][o][c]; h < pTop[p][o][c]; h++) {
+                            DATA[base + MASK + h] |= 1 << (slot + c);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private PieceTable() {
+    }
+
+    //offset into DATA of a placement given by orient and slot
+    public static int record(int piece, int orient, int slot) {
+        return (ORIENT_START[piece * 4 + orient] + slot) * STRIDE;
+    }
+
+    //offset into DATA of the move-th legal move of piece
+    public static int record(int piece, int move) {
+        return (PIECE_START[piece] + move) * STRIDE;
+    }
+
+    //height at which the placement at base comes to rest on a board with the given tops
+    public static int landingHeight(int base, int[] top) {
+        int slot = DATA[base + SLOT];
+        int height = top[slot] - DATA[base + BOTTOM];
+        for (int c = 1; c < DATA[base + WIDTH]; c++) {
+            height = Math.max(height, top[slot + c] - DATA[base + BOTTOM + c]);
+        }
+        return height;
+    }
+}
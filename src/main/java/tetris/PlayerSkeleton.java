@@ -23,7 +23,7 @@ public class PlayerSkeleton {
         FEATURES.add(new HoleFeature());
         FEATURES.add(new WellFeature());
 
-        Double[] weights = new Double[]{
+        double[] weights = new double[]{
                 0.14859893753929043,
                 -0.3988580287056608,
                 -0.05147732402369354,
@@ -35,6 +35,6 @@ public class PlayerSkeleton {
         Scorer scorer = new Scorer(heuristic);
         scorer.play(false);
 
-        System.out.printf("Rows cleared: %d", scorer.getLatestScore());
+        System.out.printf("Rows cleared: %d (seed %d)", scorer.getLatestScore(), scorer.getLatestSeed());
     }
 }
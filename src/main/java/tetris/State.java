@@ -1,11 +1,17 @@
 package tetris;
 
 import java.awt.Color;
+import java.util.Arrays;
+
+import tetris.piece.PieceSource;
+import tetris.piece.ThreadLocalPieceSource;
 
 public class State {
   public static final int COLS = 10;
   public static final int ROWS = 21;
   public static final int N_PIECES = 7;
+  //row mask with every column filled
+  public static final int FULL_ROW = (1 << COLS) - 1;
 
 
   public boolean lost = false;
@@ -16,7 +22,17 @@ public class State {
   private int cleared = 0;
 
   //each square in the grid - int means empty - other values mean the turn it was placed
+  //only kept up to date while a label is attached, otherwise rebuilt from rows by getField()
+  //the simulation itself runs on rows
   private int[][] field = new int[ROWS][COLS];
+  //whether moves were made since field was last in step with rows
+  private boolean fieldStale = false;
+  //bitboard - one mask per row, bit c set means column c is filled
+  private int[] rows = new int[ROWS];
+  //squares filled on turn 1 - where field holds 1 - as a bitmask per row
+  private int[] turnOneRows = new int[ROWS];
+  //the same bitboard by column, bit r set means row r is filled
+  private int[] cols = new int[COLS];
   //top row+1 of each column
   //0 means empty
   private int[] top = new int[COLS];
@@ -24,6 +40,8 @@ public class State {
 
   //number of next piece
   protected int nextPiece;
+  //where the pieces come from
+  private PieceSource pieces;
 
   //all legal moves - first index is piece type - then a list of 2-length arrays
   protected static int[][][] legalMoves = new int[N_PIECES][][];
@@ -74,9 +92,8 @@ public class State {
     {{1,2,2},{3,2}},
     {{2,2,1},{2,3}}
   };
-
-  //initialize legalMoves
-  {
+  //initialize legalMoves - once, not per State
+  static {
     //for each piece type
     for(int i = 0; i < N_PIECES; i++) {
       //figure number of legal moves
@@ -102,7 +119,21 @@ public class State {
   }
 
 
+  //turn numbers are exact for moves made while a label was attached - other filled squares
+  //get the turn on which the field was rebuilt
   public int[][] getField() {
+    if(fieldStale) {
+      for(int r = 0; r < ROWS; r++) {
+        for(int c = 0; c < COLS; c++) {
+          if((rows[r] & (1 << c)) == 0) {
+            field[r][c] = 0;
+          } else if(field[r][c] == 0) {
+            field[r][c] = turn;
+          }
+        }
+      }
+      fieldStale = false;
+    }
     return field;
   }
 
@@ -110,6 +141,18 @@ public class State {
     return top;
   }
 
+  public int[] getRows() {
+    return rows;
+  }
+
+  public int[] getTurnOneRows() {
+    return turnOneRows;
+  }
+
+  public int[] getCols() {
+    return cols;
+  }
+
   public static int[] getpOrients() {
     return pOrients;
   }
@@ -151,8 +194,12 @@ public class State {
 
   //constructor
   public State() {
-    nextPiece = randomPiece();
+    this(ThreadLocalPieceSource.INSTANCE);
+  }
 
+  public State(PieceSource pieces) {
+    this.pieces = pieces;
+    nextPiece = randomPiece();
   }
 
   public State(State s) {
@@ -165,16 +212,20 @@ public class State {
 		for (int i = 0; i < State.COLS; i++) {
 			top[i] = s.getTop()[i];
 		}
+    System.arraycopy(s.getRows(), 0, rows, 0, ROWS);
+    System.arraycopy(s.getTurnOneRows(), 0, turnOneRows, 0, ROWS);
+    System.arraycopy(s.getCols(), 0, cols, 0, COLS);
 
     this.turn = s.getTurnNumber();
     this.cleared = s.getRowsCleared();
     this.lost = s.hasLost();
     this.nextPiece = s.getNextPiece();
+    this.pieces = s.pieces;
   }
 
-  //random integer, returns 0-/**/6
+  //next piece from the piece source, returns 0-6
   private int randomPiece() {
-    return (int)(Math.random()*N_PIECES);
+    return pieces.nextPiece();
   }
 
 
@@ -198,63 +249,75 @@ public class State {
   //returns false if you lose - true otherwise
   public boolean makeMove(int orient, int slot) {
     turn++;
-    //height if the first column makes contact
-    int height = top[slot]-pBottom[nextPiece][orient][0];
-    //for each column beyond the first in the piece
-    for(int c = 1; c < pWidth[nextPiece][orient];c++) {
-      if (slot + c >= 10) {
-        System.out.println("SLOT and C are awry");
-      }
-      height = Math.max(height,top[slot+c]-pBottom[nextPiece][orient][c]);
-    }
+    int[] data = PieceTable.DATA;
+    int base = PieceTable.record(nextPiece, orient, slot);
+    int width = data[base+PieceTable.WIDTH];
+    int pieceHeight = data[base+PieceTable.HEIGHT];
+    //height at which the piece comes to rest
+    int height = PieceTable.landingHeight(base, top);
 
     //check if game ended
-    if(height+pHeight[nextPiece][orient] >= ROWS) {
+    if(height+pieceHeight >= ROWS) {
       lost = true;
       return false;
     }
 
 
-    //for each column in the piece - fill in the appropriate blocks
-    for(int i = 0; i < pWidth[nextPiece][orient]; i++) {
+    //for each row of the piece - or its mask into the board
+    for(int h = 0; h < pieceHeight; h++) {
+      rows[height+h] |= data[base+PieceTable.MASK+h];
+      if(turn == 1) {
+        turnOneRows[height+h] |= data[base+PieceTable.MASK+h];
+      }
+    }
 
-      //from bottom to top of brick
-      for(int h = height+pBottom[nextPiece][orient][i]; h < height+pTop[nextPiece][orient][i]; h++) {
-        field[h][i+slot] = turn;
+    //keep the turn numbers up to date only while drawing - headless games skip them
+    boolean trackField = label != null && !fieldStale;
+    if(trackField) {
+      for(int i = 0; i < width; i++) {
+
+        //from bottom to top of brick
+        for(int h = height+data[base+PieceTable.BOTTOM+i]; h < height+data[base+PieceTable.TOP+i]; h++) {
+          field[h][i+slot] = turn;
+        }
       }
+    } else {
+      fieldStale = true;
     }
 
-    //adjust top
-    for(int c = 0; c < pWidth[nextPiece][orient]; c++) {
-      top[slot+c]=height+pTop[nextPiece][orient][c];
+    //adjust top and the column masks
+    for(int c = 0; c < width; c++) {
+      int t = data[base+PieceTable.TOP+c];
+      int b = data[base+PieceTable.BOTTOM+c];
+      top[slot+c]=height+t;
+      cols[slot+c] |= ((1 << (t-b)) - 1) << (height+b);
     }
 
     int rowsCleared = 0;
 
     //check for full rows - starting at the top
-    for(int r = height+pHeight[nextPiece][orient]-1; r >= height; r--) {
-      //check all columns in the row
-      boolean full = true;
-      for(int c = 0; c < COLS; c++) {
-        if(field[r][c] == 0) {
-          full = false;
-          break;
-        }
-      }
+    for(int r = height+pieceHeight-1; r >= height; r--) {
       //if the row was full - remove it and slide above stuff down
-      if(full) {
+      if(rows[r] == FULL_ROW) {
         rowsCleared++;
         cleared++;
-        //for each column
+        //slide down all rows above - the top row is always empty
+        System.arraycopy(rows, r+1, rows, r, ROWS-1-r);
+        rows[ROWS-1] = 0;
+        System.arraycopy(turnOneRows, r+1, turnOneRows, r, ROWS-1-r);
+        turnOneRows[ROWS-1] = 0;
+        //rotate the turn number rows the same way, reusing the cleared one
+        if(trackField) {
+          int[] removed = field[r];
+          System.arraycopy(field, r+1, field, r, ROWS-1-r);
+          Arrays.fill(removed, 0);
+          field[ROWS-1] = removed;
+        }
+        //drop row r from each column and lower the top
+        int below = (1 << r) - 1;
         for(int c = 0; c < COLS; c++) {
-
-          //slide down all bricks
-          for(int i = r; i < top[c]; i++) {
-            field[i][c] = field[i+1][c];
-          }
-          //lower the top
-          top[c]--;
-          while(top[c]>=1 && field[top[c]-1][c]==0) top[c]--;
+          cols[c] = (cols[c] & below) | ((cols[c] >>> 1) & ~below);
+          top[c] = 32 - Integer.numberOfLeadingZeros(cols[c]);
         }
       }
     }
@@ -279,7 +342,7 @@ public class State {
 
     for(int c = 0; c < COLS; c++) {
       for(int r = 0; r < top[c]; r++) {
-        if(field[r][c] != 0) {
+        if((rows[r] & (1 << c)) != 0) {
           drawBrick(c,r);
         }
       }
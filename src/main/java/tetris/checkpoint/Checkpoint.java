@@ -0,0 +1,149 @@
+package tetris.checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * State of an optimizer after an iteration: the weights and scores of every
+ * individual (GA), particle (PSO) or of the current heuristic (SA), plus
+ * whatever else the optimizer keeps. Fields an optimizer does not use stay
+ * null and take no room on disk.
+ *
+ * Generator state is a single seed: optimizers reseed their generator from
+ * randomSeed whenever they checkpoint, so a resumed run draws the same
+ * numbers an uninterrupted one would.
+ */
+public class Checkpoint {
+    private static final int GAMES = 1;
+    private static final int VELOCITIES = 2;
+    private static final int BESTS = 4;
+    private static final int GLOBAL_BEST = 8;
+    private static final int SEEDS = 16;
+
+    public int iteration;
+    public long randomSeed;
+    // Weights and score of each individual
+    public double[][] positions;
+    public double[] scores;
+    // Games each score rests on
+    public int[] games;
+    // Velocity and personal best of each particle
+    public double[][] velocities;
+    public double[][] bests;
+    public double[] bestScores;
+    // Best heuristic found so far
+    public double[] globalBest;
+    public double globalBestScore;
+    // Piece sequence seeds in use
+    public long[] seeds;
+
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int flags = (games != null ? GAMES : 0)
+                | (velocities != null ? VELOCITIES : 0)
+                | (bests != null ? BESTS : 0)
+                | (globalBest != null ? GLOBAL_BEST : 0)
+                | (seeds != null ? SEEDS : 0);
+        int n = positions.length;
+        int d = n == 0 ? 0 : positions[0].length;
+        out.writeInt(iteration);
+        out.writeLong(randomSeed);
+        out.writeInt(flags);
+        out.writeInt(n);
+        out.writeInt(d);
+        writeMatrix(out, positions);
+        writeVector(out, scores);
+        if (games != null) {
+            for (int g : games) {
+                out.writeInt(g);
+            }
+        }
+        if (velocities != null) {
+            writeMatrix(out, velocities);
+        }
+        if (bests != null) {
+            writeMatrix(out, bests);
+            writeVector(out, bestScores);
+        }
+        if (globalBest != null) {
+            writeVector(out, globalBest);
+            out.writeDouble(globalBestScore);
+        }
+        if (seeds != null) {
+            out.writeInt(seeds.length);
+            for (long seed : seeds) {
+                out.writeLong(seed);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Checkpoint decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        Checkpoint c = new Checkpoint();
+        c.iteration = in.readInt();
+        c.randomSeed = in.readLong();
+        int flags = in.readInt();
+        int n = in.readInt();
+        int d = in.readInt();
+        c.positions = readMatrix(in, n, d);
+        c.scores = readVector(in, n);
+        if ((flags & GAMES) != 0) {
+            c.games = new int[n];
+            for (int i = 0; i < n; i++) {
+                c.games[i] = in.readInt();
+            }
+        }
+        if ((flags & VELOCITIES) != 0) {
+            c.velocities = readMatrix(in, n, d);
+        }
+        if ((flags & BESTS) != 0) {
+            c.bests = readMatrix(in, n, d);
+            c.bestScores = readVector(in, n);
+        }
+        if ((flags & GLOBAL_BEST) != 0) {
+            c.globalBest = readVector(in, d);
+            c.globalBestScore = in.readDouble();
+        }
+        if ((flags & SEEDS) != 0) {
+            c.seeds = new long[in.readInt()];
+            for (int i = 0; i < c.seeds.length; i++) {
+                c.seeds[i] = in.readLong();
+            }
+        }
+        return c;
+    }
+
+    private static void writeMatrix(DataOutputStream out, double[][] matrix) throws IOException {
+        for (double[] row : matrix) {
+            writeVector(out, row);
+        }
+    }
+
+    private static void writeVector(DataOutputStream out, double[] vector) throws IOException {
+        for (double value : vector) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static double[][] readMatrix(DataInputStream in, int n, int d) throws IOException {
+        double[][] matrix = new double[n][];
+        for (int i = 0; i < n; i++) {
+            matrix[i] = readVector(in, d);
+        }
+        return matrix;
+    }
+
+    private static double[] readVector(DataInputStream in, int d) throws IOException {
+        double[] vector = new double[d];
+        for (int i = 0; i < d; i++) {
+            vector[i] = in.readDouble();
+        }
+        return vector;
+    }
+}
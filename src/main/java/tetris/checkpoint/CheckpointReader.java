@@ -0,0 +1,133 @@
+package tetris.checkpoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import tetris.feature.Feature;
+
+/**
+ * Reads back the latest checkpoint written by a CheckpointWriter. Only the
+ * record lengths are read on the way to the end of the file, so resuming
+ * takes milliseconds however long the run was.
+ */
+public class CheckpointReader {
+    private CheckpointReader() {
+    }
+
+    /**
+     * @param file checkpoint file
+     * @param optimizer name of the optimizer that wrote it
+     * @param features features of the heuristics
+     * @return last intact checkpoint, null if the file does not exist or has none
+     * @throws IOException if the file belongs to another optimizer or feature list
+     */
+    public static Checkpoint readLatest(File file, String optimizer, List<? extends Feature> features)
+            throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        byte[] header = CheckpointWriter.header(optimizer, features);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<Long> offsets = records(channel, header);
+            for (int i = offsets.size() - 1; i >= 0; i--) {
+                byte[] record = read(channel, offsets.get(i));
+                if (record != null) {
+                    return Checkpoint.decode(record);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Like readLatest(), but a file of another optimizer or feature list is moved aside (see
+     * CheckpointWriter.setAside()) so a new one can be started in its place
+     * @return last intact checkpoint, null if there is none or the file was moved aside
+     * @throws IOException if the file cannot be read or moved
+     */
+    public static Checkpoint readOrSetAside(File file, String optimizer, List<? extends Feature> features)
+            throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        boolean matches;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            matches = hasHeader(channel, CheckpointWriter.header(optimizer, features));
+        }
+        if (!matches) {
+            File aside = CheckpointWriter.setAside(file);
+            System.err.println(file + " is not a checkpoint of " + optimizer + " with these features, moved it to "
+                    + aside);
+            return null;
+        }
+        return readLatest(file, optimizer, features);
+    }
+
+    // Length of the header and every record up to the last intact one
+    static long validLength(FileChannel channel, byte[] header) throws IOException {
+        List<Long> offsets = records(channel, header);
+        for (int i = offsets.size() - 1; i >= 0; i--) {
+            byte[] record = read(channel, offsets.get(i));
+            if (record != null) {
+                return offsets.get(i) + record.length + 8;
+            }
+        }
+        return header.length;
+    }
+
+    // Offsets of the records that fit in the file, after checking the header
+    private static List<Long> records(FileChannel channel, byte[] header) throws IOException {
+        if (!hasHeader(channel, header)) {
+            throw new IOException("Not a checkpoint of this optimizer and feature list");
+        }
+        List<Long> offsets = new ArrayList<>();
+        long size = channel.size();
+        long offset = header.length;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (offset + 8 <= size) {
+            length.clear();
+            readFully(channel, length, offset);
+            int n = length.getInt(0);
+            if (n < 0 || offset + 8 + n > size) {
+                break; // cut short by a crash
+            }
+            offsets.add(offset);
+            offset += 8 + n;
+        }
+        return offsets;
+    }
+
+    private static boolean hasHeader(FileChannel channel, byte[] header) throws IOException {
+        ByteBuffer start = ByteBuffer.allocate(header.length);
+        readFully(channel, start, 0);
+        return !start.hasRemaining() && Arrays.equals(start.array(), header);
+    }
+
+    // Bytes of the record at the offset, null if they fail the CRC
+    private static byte[] read(FileChannel channel, long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length, offset);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0) + 4);
+        readFully(channel, record, offset + 4);
+        byte[] bytes = Arrays.copyOf(record.array(), record.capacity() - 4);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue() == record.getInt(bytes.length) ? bytes : null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return;
+            }
+        }
+    }
+}
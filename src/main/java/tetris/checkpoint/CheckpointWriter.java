@@ -0,0 +1,131 @@
+package tetris.checkpoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import tetris.feature.Feature;
+
+/**
+ * Appends checkpoints to a file, which is never rewritten. The file starts
+ * with a header naming the optimizer and its features; each checkpoint
+ * follows as a record of its length, its bytes and their CRC-32.
+ *
+ * Records are written straight to the file, so a crash of the process loses
+ * nothing; they are forced to disk every syncEvery records and on close, so
+ * an OS crash or power cut loses at most the records since. A record cut
+ * short by a crash is dropped when the file is next opened.
+ */
+public class CheckpointWriter implements Closeable {
+    public static final int DEFAULT_SYNC_EVERY = 10;
+    static final int MAGIC = 0x54434B50; // "TCKP"
+    static final int VERSION = 1;
+
+    private final FileChannel channel;
+    private final int syncEvery;
+    private int unsynced = 0;
+
+    public CheckpointWriter(File file, String optimizer, List<? extends Feature> features) throws IOException {
+        this(file, optimizer, features, DEFAULT_SYNC_EVERY);
+    }
+
+    /**
+     * Opens the file for appending, creating it if needed
+     * @param file checkpoint file
+     * @param optimizer name of the optimizer, which must match an existing file
+     * @param features features of the heuristics, which must match an existing file
+     * @param syncEvery records written between syncs to disk
+     * @throws IOException if the file belongs to another optimizer or feature list
+     */
+    public CheckpointWriter(File file, String optimizer, List<? extends Feature> features, int syncEvery)
+            throws IOException {
+        if (syncEvery < 1) {
+            throw new IllegalArgumentException("Need to sync at least every record");
+        }
+        this.syncEvery = syncEvery;
+        byte[] header = header(optimizer, features);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                write(ByteBuffer.wrap(header));
+                channel.force(true);
+            } else {
+                channel.truncate(CheckpointReader.validLength(channel, header));
+                channel.position(channel.size());
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves a checkpoint file that cannot be resumed from out of the way, keeping it for inspection
+     * @param file checkpoint file
+     * @return where the file is now: its name with the time and .old appended
+     */
+    public static File setAside(File file) throws IOException {
+        File aside = new File(file.getPath() + "." + System.currentTimeMillis() + ".old");
+        Files.move(file.toPath(), aside.toPath());
+        return aside;
+    }
+
+    public void append(Checkpoint checkpoint) throws IOException {
+        byte[] record = checkpoint.encode();
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer buffer = ByteBuffer.allocate(record.length + 8);
+        buffer.putInt(record.length).put(record).putInt((int) crc.getValue());
+        buffer.flip();
+        write(buffer);
+        if (++unsynced >= syncEvery) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces every record written so far to disk
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static byte[] header(String optimizer, List<? extends Feature> features) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeUTF(optimizer);
+        out.writeInt(features.size());
+        for (Feature feature : features) {
+            out.writeUTF(feature.getClass().getName());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
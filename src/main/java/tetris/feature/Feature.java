@@ -7,4 +7,9 @@ public abstract class Feature {
   public Feature() {};
 
   public abstract double getValue(NextState s);
+
+  //id of the fused implementation in FeatureExtractor, UNSUPPORTED if there is none
+  public int getId() {
+    return FeatureExtractor.UNSUPPORTED;
+  }
 }
@@ -0,0 +1,270 @@
+package tetris.feature;
+
+import java.util.List;
+
+import tetris.NextState;
+import tetris.State;
+
+/**
+ * Computes a list of features in one pass over the columns (and one over
+ * the rows, for row transitions and wells) of the bitboard, instead of one
+ * field walk per Feature. Column features are popcounts of the column masks,
+ * row features are RowTables lookups. Values match the getValue() of each
+ * Feature class.
+ *
+ * Extractors hold no per-call state and can be shared between threads.
+ */
+public class FeatureExtractor {
+    public static final int UNSUPPORTED = -1;
+    public static final int ROWS_CLEARED = 0;
+    public static final int HOLES = 1;
+    public static final int MAX_HOLE_HEIGHT = 2;
+    public static final int TOTAL_HEIGHT = 3;
+    public static final int UNEVEN = 4;
+    public static final int MAX_HEIGHT = 5;
+    public static final int BLOCKS_ON_HOLE = 6;
+    public static final int WELLS = 7;
+    public static final int ROW_TRANSITIONS = 8;
+    public static final int COL_TRANSITIONS = 9;
+    public static final int MAX_WELL = 10;
+    public static final int NUM_FEATURES = 11;
+
+    // Every row of a column filled
+    private static final int ALL_ROWS = (1 << State.ROWS) - 1;
+
+    private final int[] ids;
+    private final boolean needsWells;
+    private final boolean needsMaxWell;
+    private final boolean needsRows;
+
+    /**
+     * @param features features to compute, in output order
+     * @throws IllegalArgumentException if a feature has no fused implementation
+     */
+    public FeatureExtractor(List<Feature> features) {
+        ids = new int[features.size()];
+        boolean wells = false;
+        boolean maxWell = false;
+        boolean rows = false;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = features.get(i).getId();
+            if (ids[i] == UNSUPPORTED) {
+                throw new IllegalArgumentException("No fused implementation of " + features.get(i).getClass().getName());
+            }
+            wells |= ids[i] == WELLS;
+            maxWell |= ids[i] == MAX_WELL;
+            rows |= ids[i] == ROW_TRANSITIONS;
+        }
+        needsWells = wells;
+        needsMaxWell = maxWell;
+        needsRows = rows;
+    }
+
+    /**
+     * @param features feature list
+     * @return whether every feature in the list can be computed by an extractor
+     */
+    public static boolean supports(List<Feature> features) {
+        for (Feature feature : features) {
+            if (feature.getId() == UNSUPPORTED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the value of each feature into out
+     * @param s board
+     * @param out one slot per feature
+     */
+    public void extract(NextState s, double[] out) {
+        compute(s, null, out);
+    }
+
+    /**
+     * @param s board
+     * @param weights one weight per feature
+     * @return weighted sum of the features
+     */
+    public double evaluate(NextState s, double[] weights) {
+        return compute(s, weights, null);
+    }
+
+    private double compute(NextState s, double[] weights, double[] out) {
+        int[] top = s.getTop();
+        int[] cols = s.getCols();
+
+        int totalHeight = 0;
+        int maxHeight = 0;
+        int uneven = 0;
+        int holes = 0;
+        int maxHoleHeight = -1;
+        int blocksOnHole = 0;
+        int colTransitions = 0;
+        int wells = 0;
+        int maxWell = -1;
+        int rowTransitions = 0;
+
+        IncrementalFeatures tracked = s.getIncrementalFeatures();
+        if (tracked != null) {
+            // Kept up to date alongside the board
+            tracked.refresh(s);
+            totalHeight = tracked.getTotalHeight();
+            maxHeight = tracked.getMaxHeight();
+            uneven = tracked.getUneven();
+            holes = tracked.getHoles();
+            maxHoleHeight = tracked.getMaxHoleHeight();
+            blocksOnHole = tracked.getBlocksOnHole();
+            colTransitions = tracked.getColTransitions();
+            wells = tracked.getWells();
+            maxWell = tracked.getMaxWell();
+            rowTransitions = tracked.getRowTransitions();
+        } else {
+            int wellRun = 0;
+            for (int c = 0; c < State.COLS; c++) {
+                int h = top[c];
+                int col = cols[c];
+                totalHeight += h;
+                maxHeight = Math.max(maxHeight, h);
+                if (c > 0) {
+                    uneven += Math.abs(h - top[c - 1]);
+                }
+                holes += holes(col, h);
+                maxHoleHeight = Math.max(maxHoleHeight, maxHoleHeight(col, h));
+                blocksOnHole += blocksOnHole(col, h);
+                colTransitions += colTransitions(col, h);
+
+                if (needsMaxWell && h != 1) {
+                    wellRun += wellRun(col, walled(cols, c));
+                    maxWell = Math.max(maxWell, wellRun);
+                }
+            }
+
+            if (needsRows || needsWells) {
+                int[] rows = s.getRows();
+                // Columns with a block in this row or above, built from the top down
+                int above = 0;
+                for (int r = maxHeight - 1; r >= 0; r--) {
+                    int row = rows[r];
+                    above |= row;
+                    int last = r == 0 ? 1 : rows[r - 1] >>> (State.COLS - 1);
+                    rowTransitions += RowTables.ROW_TRANSITIONS[(last << State.COLS) | row];
+                    // Walled cells above the top of their column; none exist above maxHeight
+                    for (int well = RowTables.WELL_CELLS[row] & ~above; well != 0; well &= well - 1) {
+                        int depth = r - top[Integer.numberOfTrailingZeros(well)] + 1;
+                        wells += depth * (depth + 1) / 2;
+                    }
+                }
+                // Empty rows: the first sees the cell below it and the wall, the rest just the wall
+                if (maxHeight < State.ROWS) {
+                    int last = maxHeight == 0 ? 1 : rows[maxHeight - 1] >>> (State.COLS - 1);
+                    rowTransitions += last + State.ROWS - maxHeight;
+                }
+            }
+        }
+
+        double sum = 0;
+        for (int i = 0; i < ids.length; i++) {
+            double value;
+            switch (ids[i]) {
+                case ROWS_CLEARED:
+                    value = s.getRowsCleared();
+                    break;
+                case HOLES:
+                    value = holes * 10;
+                    break;
+                case MAX_HOLE_HEIGHT:
+                    value = maxHoleHeight;
+                    break;
+                case TOTAL_HEIGHT:
+                    value = totalHeight;
+                    break;
+                case UNEVEN:
+                    value = uneven;
+                    break;
+                case MAX_HEIGHT:
+                    value = maxHeight;
+                    break;
+                case BLOCKS_ON_HOLE:
+                    value = blocksOnHole;
+                    break;
+                case WELLS:
+                    value = wells;
+                    break;
+                case ROW_TRANSITIONS:
+                    value = rowTransitions;
+                    break;
+                case COL_TRANSITIONS:
+                    value = colTransitions;
+                    break;
+                case MAX_WELL:
+                    value = maxWell;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown feature id " + ids[i]);
+            }
+            if (out != null) {
+                out[i] = value;
+            }
+            if (weights != null) {
+                sum += weights[i] * value;
+            }
+        }
+        return sum;
+    }
+
+    // Empty cells under the top of a column
+    static int holes(int col, int h) {
+        return Integer.bitCount(~col & ((1 << h) - 1));
+    }
+
+    // Highest empty cell under the top of a column, -1 if there is none
+    static int maxHoleHeight(int col, int h) {
+        int empty = ~col & ((1 << h) - 1);
+        return empty == 0 ? -1 : 31 - Integer.numberOfLeadingZeros(empty);
+    }
+
+    // Filled cells above the lowest hole of a column
+    static int blocksOnHole(int col, int h) {
+        int empty = ~col & ((1 << h) - 1);
+        return empty == 0 ? 0 : Integer.bitCount(col >>> (Integer.numberOfTrailingZeros(empty) + 1));
+    }
+
+    // Filled/empty changes up a column, counting an empty bottom cell as one
+    static int colTransitions(int col, int h) {
+        if (h == 0) {
+            return 0;
+        }
+        int transitions = Integer.bitCount((col ^ (col >>> 1)) & ((1 << (h - 1)) - 1));
+        return (col & 1) == 0 ? transitions + 1 : transitions;
+    }
+
+    // Rows in which both neighbours of column c are filled, walls count as filled
+    static int walled(int[] cols, int c) {
+        return (c == 0 ? ALL_ROWS : cols[c - 1]) & (c == State.COLS - 1 ? ALL_ROWS : cols[c + 1]);
+    }
+
+    // WellFeature of one column: each walled cell above the top adds its depth from the top, triangularly
+    static int wells(int col, int h, int walled) {
+        int well = walled & ~((1 << h) - 1) & ALL_ROWS;
+        int sum = 0;
+        while (well != 0) {
+            int depth = Integer.numberOfTrailingZeros(well) - h + 1;
+            sum += depth * (depth + 1) / 2;
+            well &= well - 1;
+        }
+        return sum;
+    }
+
+    // MaxWellFeature of one column: walled cells under its lowest block
+    static int wellRun(int col, int walled) {
+        int run = col == 0 ? ALL_ROWS : Integer.lowestOneBit(col) - 1;
+        return Integer.bitCount(run & walled);
+    }
+
+    // Transitions along a row, starting from the last cell of the row below and ending at a filled wall
+    static int rowTransitions(int row, int last) {
+        return RowTables.ROW_TRANSITIONS[(last << State.COLS) | row];
+    }
+}
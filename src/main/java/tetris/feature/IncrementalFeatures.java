@@ -0,0 +1,211 @@
+package tetris.feature;
+
+import tetris.NextState;
+import tetris.State;
+
+/**
+ * Feature values carried alongside a NextState. The board marks the columns
+ * and rows each placement or undo touched, and the next refresh() recomputes
+ * only those; everything is rebuilt only when rows are cleared. Marks pile up
+ * until the features are read, so an apply/undo pair costs one refresh.
+ *
+ * FeatureExtractor reads the totals from here instead of scanning the board.
+ */
+public class IncrementalFeatures {
+    // Per column contributions
+    private final int[] height = new int[State.COLS];
+    private final int[] holes = new int[State.COLS];
+    private final int[] maxHoleHeight = new int[State.COLS];
+    private final int[] blocksOnHole = new int[State.COLS];
+    private final int[] colTransitions = new int[State.COLS];
+    private final int[] wells = new int[State.COLS];
+    private final int[] wellRun = new int[State.COLS];
+    // |height[c] - height[c - 1]|, unused for c = 0
+    private final int[] uneven = new int[State.COLS];
+    // Per row contributions
+    private final int[] rowTransitions = new int[State.ROWS];
+
+    private int totalHeight;
+    private int totalUneven;
+    private int totalHoles;
+    private int totalBlocksOnHole;
+    private int totalColTransitions;
+    private int totalWells;
+    private int totalWellRun;
+    private int totalRowTransitions;
+
+    // Columns and rows changed since the last refresh
+    private int dirtyCols = ALL_COLS;
+    private int dirtyRows = ALL_ROWS;
+
+    private static final int ALL_COLS = (1 << State.COLS) - 1;
+    private static final int ALL_ROWS = (1 << State.ROWS) - 1;
+
+    /**
+     * Marks the whole board as changed, e.g. after rows were cleared
+     */
+    public void touchAll() {
+        dirtyCols = ALL_COLS;
+        dirtyRows = ALL_ROWS;
+    }
+
+    /**
+     * Marks the area a placement or undo changed
+     * @param slot leftmost column touched
+     * @param width number of columns touched
+     * @param fromRow lowest row touched
+     * @param numRows number of rows touched
+     */
+    public void touch(int slot, int width, int fromRow, int numRows) {
+        dirtyCols |= ((1 << width) - 1) << slot;
+        dirtyRows |= ((1 << numRows) - 1) << fromRow;
+    }
+
+    /**
+     * Recomputes whatever changed since the last refresh
+     * @param s board
+     */
+    public void refresh(NextState s) {
+        if (dirtyCols == ALL_COLS && dirtyRows == ALL_ROWS) {
+            rebuild(s);
+        } else if ((dirtyCols | dirtyRows) != 0) {
+            update(s, dirtyCols, dirtyRows);
+        }
+        dirtyCols = 0;
+        dirtyRows = 0;
+    }
+
+    private void rebuild(NextState s) {
+        totalHeight = 0;
+        totalUneven = 0;
+        totalHoles = 0;
+        totalBlocksOnHole = 0;
+        totalColTransitions = 0;
+        totalWells = 0;
+        totalWellRun = 0;
+        totalRowTransitions = 0;
+        for (int c = 0; c < State.COLS; c++) {
+            height[c] = 0;
+            holes[c] = 0;
+            blocksOnHole[c] = 0;
+            colTransitions[c] = 0;
+            wells[c] = 0;
+            wellRun[c] = 0;
+            uneven[c] = 0;
+        }
+        for (int r = 0; r < State.ROWS; r++) {
+            rowTransitions[r] = 0;
+        }
+        update(s, ALL_COLS, ALL_ROWS);
+    }
+
+    private void update(NextState s, int changedCols, int changedRows) {
+        int[] top = s.getTop();
+        int[] cols = s.getCols();
+        int[] rows = s.getRows();
+
+        for (int mask = changedCols; mask != 0; mask &= mask - 1) {
+            int c = Integer.numberOfTrailingZeros(mask);
+            int h = top[c];
+            int col = cols[c];
+            totalHeight += h - height[c];
+            height[c] = h;
+            maxHoleHeight[c] = FeatureExtractor.maxHoleHeight(col, h);
+
+            int value = FeatureExtractor.holes(col, h);
+            totalHoles += value - holes[c];
+            holes[c] = value;
+
+            value = FeatureExtractor.blocksOnHole(col, h);
+            totalBlocksOnHole += value - blocksOnHole[c];
+            blocksOnHole[c] = value;
+
+            value = FeatureExtractor.colTransitions(col, h);
+            totalColTransitions += value - colTransitions[c];
+            colTransitions[c] = value;
+        }
+
+        // Wells and unevenness also depend on the neighbouring columns
+        for (int mask = (changedCols | (changedCols << 1) | (changedCols >>> 1)) & ALL_COLS; mask != 0; mask &= mask - 1) {
+            int c = Integer.numberOfTrailingZeros(mask);
+            int h = top[c];
+            int walled = FeatureExtractor.walled(cols, c);
+            int value = FeatureExtractor.wells(cols[c], h, walled);
+            totalWells += value - wells[c];
+            wells[c] = value;
+
+            value = h != 1 ? FeatureExtractor.wellRun(cols[c], walled) : 0;
+            totalWellRun += value - wellRun[c];
+            wellRun[c] = value;
+
+            if (c > 0) {
+                value = Math.abs(h - top[c - 1]);
+                totalUneven += value - uneven[c];
+                uneven[c] = value;
+            }
+        }
+
+        // A row also depends on the last cell of the row below, so one more row above changes
+        for (int mask = (changedRows | (changedRows << 1)) & ALL_ROWS; mask != 0; mask &= mask - 1) {
+            int r = Integer.numberOfTrailingZeros(mask);
+            int last = r == 0 ? 1 : rows[r - 1] >>> (State.COLS - 1);
+            int value = FeatureExtractor.rowTransitions(rows[r], last);
+            totalRowTransitions += value - rowTransitions[r];
+            rowTransitions[r] = value;
+        }
+    }
+
+    public int getTotalHeight() {
+        return totalHeight;
+    }
+
+    public int getMaxHeight() {
+        int max = 0;
+        for (int c = 0; c < State.COLS; c++) {
+            max = Math.max(max, height[c]);
+        }
+        return max;
+    }
+
+    public int getUneven() {
+        return totalUneven;
+    }
+
+    public int getHoles() {
+        return totalHoles;
+    }
+
+    public int getMaxHoleHeight() {
+        int max = -1;
+        for (int c = 0; c < State.COLS; c++) {
+            max = Math.max(max, maxHoleHeight[c]);
+        }
+        return max;
+    }
+
+    public int getBlocksOnHole() {
+        return totalBlocksOnHole;
+    }
+
+    public int getColTransitions() {
+        return totalColTransitions;
+    }
+
+    public int getWells() {
+        return totalWells;
+    }
+
+    public int getMaxWell() {
+        // MaxWellFeature skips columns of height 1 and is -1 if it skipped them all
+        for (int c = 0; c < State.COLS; c++) {
+            if (height[c] != 1) {
+                return totalWellRun;
+            }
+        }
+        return -1;
+    }
+
+    public int getRowTransitions() {
+        return totalRowTransitions;
+    }
+}
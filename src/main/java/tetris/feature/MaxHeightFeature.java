@@ -15,4 +15,9 @@ public class MaxHeightFeature extends Feature{
         }
         return (double) maxHeight;
     }
+
+    @Override
+    public int getId() {
+        return FeatureExtractor.MAX_HEIGHT;
+    }
 }
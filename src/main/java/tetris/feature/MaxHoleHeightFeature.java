@@ -7,12 +7,11 @@ public class MaxHoleHeightFeature extends Feature {
     @Override
     public double getValue(NextState s) {
         int maxHeight = -1;
-        int[][] field = s.getField();
         int highest[] = s.getTop();
         for (int col = 0; col < State.COLS; col++) {
             int hole = -1;
             for (int row = 0; row < highest[col]; row++) {
-                if (field[row][col] == 0) {
+                if (!s.isFilled(row, col)) {
                     hole = row;
                 }
             }
@@ -21,4 +20,9 @@ public class MaxHoleHeightFeature extends Feature {
 
         return maxHeight;
     }
+
+    @Override
+    public int getId() {
+        return FeatureExtractor.MAX_HOLE_HEIGHT;
+    }
 }
@@ -7,7 +7,6 @@ public class MaxWellFeature extends Feature {
     @Override
     public double getValue(NextState s) {
         int max = -1;
-        int[][] field = s.getField();
         int[] top = s.getTop();
         int curr = 0;
         for (int col = 0; col < State.COLS; col++) {
@@ -15,16 +14,16 @@ public class MaxWellFeature extends Feature {
                 continue;
             }
             for (int row = 0; row < State.ROWS; row++) {
-                if (field[row][col] == 0) {
+                if (!s.isFilled(row, col)) {
                     if (col == 0) {
-                        if (field[row][col+1] == 1) {
+                        if (s.isTurnOne(row, col + 1)) {
                             curr++;
                         }
                     } else if (col == State.COLS - 1) {
-                        if (field[row][col-1] == 1) {
+                        if (s.isTurnOne(row, col - 1)) {
                             curr++;
                         }
-                    } else if (field[row][col - 1] == 1 && field[row][col + 1] == 1) {
+                    } else if (s.isTurnOne(row, col - 1) && s.isTurnOne(row, col + 1)) {
                         curr++;
                     }
                 } else {
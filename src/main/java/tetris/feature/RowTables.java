@@ -0,0 +1,42 @@
+package tetris.feature;
+
+import tetris.State;
+
+/**
+ * Lookup tables indexed by a row of the bitboard, so row features cost one
+ * load per row instead of a walk along its cells.
+ */
+public final class RowTables {
+    // Number of distinct rows
+    public static final int SIZE = 1 << State.COLS;
+
+    /**
+     * Transitions along a row, indexed by (last << COLS) | row where last is
+     * the last cell of the row below (1 below the bottom row). The row starts
+     * from that cell and ends at a filled right wall, as in RowTransitionsFeature.
+     */
+    public static final byte[] ROW_TRANSITIONS = new byte[2 * SIZE];
+
+    /**
+     * Empty cells of a row whose left and right neighbours are both filled,
+     * walls counting as filled
+     */
+    public static final short[] WELL_CELLS = new short[SIZE];
+
+    static {
+        int full = SIZE - 1;
+        for (int row = 0; row < SIZE; row++) {
+            for (int last = 0; last < 2; last++) {
+                int cells = ((row | (1 << State.COLS)) << 1) | last;
+                ROW_TRANSITIONS[(last << State.COLS) | row] =
+                        (byte) Integer.bitCount((cells ^ (cells >>> 1)) & ((1 << (State.COLS + 1)) - 1));
+            }
+            int left = ((row << 1) | 1) & full;
+            int right = (row >>> 1) | (1 << (State.COLS - 1));
+            WELL_CELLS[row] = (short) (~row & left & right & full);
+        }
+    }
+
+    private RowTables() {
+    }
+}
@@ -9,18 +9,23 @@ import tetris.State;
 public class RowTransitionsFeature extends Feature {
     @Override
     public double getValue(NextState s) {
-        int[][] field = s.getField();
         int rowTransitions = 0;
-        int lastCell = 1;
+        boolean lastFilled = true;
         for (int i = 0;  i < ROWS;  i++) {
             for (int j = 0;  j < COLS;  j++) {
-                if ((field[i][j] == 0) != (lastCell == 0)) {
+                boolean filled = s.isFilled(i, j);
+                if (filled != lastFilled) {
                     rowTransitions++;
                 }
-                lastCell = field[i][j];
+                lastFilled = filled;
             }
-            if (lastCell == 0) rowTransitions++;
+            if (!lastFilled) rowTransitions++;
         }
         return (double) rowTransitions;
     }
+
+    @Override
+    public int getId() {
+        return FeatureExtractor.ROW_TRANSITIONS;
+    }
 }
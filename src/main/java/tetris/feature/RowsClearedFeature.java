@@ -14,4 +14,9 @@ public class RowsClearedFeature extends Feature {
   public boolean equals(Object o) {
     return o instanceof RowsClearedFeature;
   }
+
+  @Override
+  public int getId() {
+    return FeatureExtractor.ROWS_CLEARED;
+  }
 }
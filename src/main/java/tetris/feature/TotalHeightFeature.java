@@ -19,4 +19,9 @@ public class TotalHeightFeature extends Feature {
   public boolean equals(Object o) {
     return o instanceof TotalHeightFeature;
   }
+
+  @Override
+  public int getId() {
+    return FeatureExtractor.TOTAL_HEIGHT;
+  }
 }
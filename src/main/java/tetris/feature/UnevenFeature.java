@@ -18,4 +18,9 @@ public class UnevenFeature extends Feature {
   public boolean equals(Object o) {
     return o instanceof UnevenFeature;
   }
+
+  @Override
+  public int getId() {
+    return FeatureExtractor.UNEVEN;
+  }
 }
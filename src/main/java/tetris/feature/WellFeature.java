@@ -6,14 +6,13 @@ import tetris.State;
 public class WellFeature extends Feature {
     @Override
     public double getValue(NextState s) {
-        int[][] field = s.getField();
         int[] top = s.getTop();
         int wellSum = 0;
         for (int j = 0;  j < State.COLS;  j++) {
             for (int i = State.ROWS -1;  i >= 0;  i--) {
-                if (field[i][j] == 0) {
-                    if (j == 0 || field[i][j - 1] != 0) {
-                        if (j == State.COLS - 1 || field[i][j + 1] != 0) {
+                if (!s.isFilled(i, j)) {
+                    if (j == 0 || s.isFilled(i, j - 1)) {
+                        if (j == State.COLS - 1 || s.isFilled(i, j + 1)) {
                             int wellHeight = i - top[j] + 1;
                             wellSum += wellHeight * (wellHeight + 1) / 2;
                         }
@@ -30,4 +29,9 @@ public class WellFeature extends Feature {
   public boolean equals(Object o) {
     return o instanceof WellFeature;
   }
+
+    @Override
+    public int getId() {
+        return FeatureExtractor.WELLS;
+    }
 }
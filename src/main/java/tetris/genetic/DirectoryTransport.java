@@ -0,0 +1,134 @@
+package tetris.genetic;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Migration through a directory every island can see, e.g. a shared mount.
+ * Migrants for island i are written to a temporary file and renamed to
+ * "migrants-i-from-seq.txt", so a reader never sees half a file; the reader
+ * deletes each file it takes in.
+ *
+ * Each island keeps the modification time of "island-i.alive" fresh from a
+ * background thread. An island whose file is missing or older than the
+ * timeout is taken as dead and skipped.
+ */
+public class DirectoryTransport implements MigrationTransport {
+    public static final long DEFAULT_HEARTBEAT = 5000;
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    private final File dir;
+    private final int island;
+    private final int islands;
+    private final long timeout;
+    private final File alive;
+    private final ScheduledExecutorService heartbeat;
+    private long sent = 0;
+
+    public DirectoryTransport(File dir, int island, int islands) throws IOException {
+        this(dir, island, islands, DEFAULT_HEARTBEAT, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param dir directory shared by the islands
+     * @param island this island
+     * @param islands number of islands
+     * @param heartbeatMillis how often this island marks itself alive
+     * @param timeoutMillis how long an island may go unmarked before it is taken as dead
+     */
+    public DirectoryTransport(File dir, int island, int islands, long heartbeatMillis, long timeoutMillis)
+            throws IOException {
+        this.dir = dir;
+        this.island = island;
+        this.islands = islands;
+        this.timeout = timeoutMillis;
+        dir.mkdirs();
+        this.alive = aliveFile(island);
+        touch();
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heartbeat-" + island);
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                touch();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void send(List<Migrant> migrants) throws IOException {
+        for (int k = 1; k < islands; k++) {
+            int next = (island + k) % islands;
+            if (isAlive(next)) {
+                List<String> lines = new ArrayList<>();
+                for (Migrant migrant : migrants) {
+                    lines.add(migrant.toLine());
+                }
+                String name = "migrants-" + next + "-" + island + "-" + (sent++);
+                Path tmp = new File(dir, name + ".tmp").toPath();
+                Files.write(tmp, lines, StandardCharsets.UTF_8);
+                Files.move(tmp, new File(dir, name + ".txt").toPath(), StandardCopyOption.ATOMIC_MOVE);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<Migrant> receive() throws IOException {
+        String prefix = "migrants-" + island + "-";
+        File[] files = dir.listFiles((d, name) -> name.startsWith(prefix) && name.endsWith(".txt"));
+        List<Migrant> migrants = new ArrayList<>();
+        if (files == null) {
+            return migrants;
+        }
+        // Oldest first
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                try {
+                    migrants.add(Migrant.parse(line));
+                } catch (IllegalArgumentException e) {
+                    e.printStackTrace();
+                }
+            }
+            Files.deleteIfExists(file.toPath());
+        }
+        return migrants;
+    }
+
+    @Override
+    public void close() throws IOException {
+        heartbeat.shutdownNow();
+        Files.deleteIfExists(alive.toPath());
+    }
+
+    private boolean isAlive(int other) {
+        long modified = aliveFile(other).lastModified();
+        return modified != 0 && System.currentTimeMillis() - modified < timeout;
+    }
+
+    private void touch() throws IOException {
+        if (!alive.exists()) {
+            alive.createNewFile();
+        }
+        alive.setLastModified(System.currentTimeMillis());
+    }
+
+    private File aliveFile(int other) {
+        return new File(dir, "island-" + other + ".alive");
+    }
+}
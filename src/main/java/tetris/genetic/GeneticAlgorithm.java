@@ -7,16 +7,20 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
+import tetris.checkpoint.Checkpoint;
+import tetris.checkpoint.CheckpointReader;
+import tetris.checkpoint.CheckpointWriter;
 import tetris.feature.ColTransitionsFeature;
 import tetris.feature.Feature;
 import tetris.feature.HoleFeature;
@@ -24,29 +28,46 @@ import tetris.feature.RowTransitionsFeature;
 import tetris.feature.RowsClearedFeature;
 import tetris.feature.WellFeature;
 import tetris.heuristic.Heuristic;
+import tetris.scorer.EvaluationService;
+import tetris.scorer.FitnessCache;
+import tetris.scorer.GameTask;
+import tetris.scorer.RacingEvaluator;
 import tetris.scorer.Scorer;
 
 public class GeneticAlgorithm {
+    // Average games per individual; racing moves them from hopeless individuals to promising ones
     private static final int NUM_GAMES = 3;
+    private static final int MIN_GAMES = 1;
+    private static final int MAX_GAMES = 10;
+    // Every individual of a generation plays the same piece sequences, so scores compare like for like
+    private static final boolean COMMON_SEEDS = true;
+    // Games are stopped here and scored as censored, so no straggler holds up a generation
+    private static final int MAX_PIECES = 100000;
+    // Weight vectors whose games are remembered, per individual; children that copy a parent
+    // build on its games
+    private static final int FITNESS_CACHE_PER_INDIVIDUAL = 4;
     private static final double MUTATION_PROBABILITY = 0.05;
+    private static final Selection.Type SELECTION = Selection.Type.PROPORTIONAL;
+    private static final int TOURNAMENT_SIZE = 3;
+    private static final Replacement REPLACEMENT = Replacement.TOURNAMENT;
+    // Children in play per evaluation thread in steady state, so a thread never waits for the next
+    private static final int CHILDREN_PER_THREAD = 2;
     private static final String EXPERIMENTS_DIR = "experiments/";
     private static final String START_FILE = "heuristics.txt";
-    private static final String HEURISTICS_FILE = EXPERIMENTS_DIR + "heuristics_%s.txt";
-    private static final String BEST_HEURISTICS_FILE = EXPERIMENTS_DIR + "/best_heuristic.txt";
+    // State after each iteration is appended here, and a run picks up from the last one
+    private static final String CHECKPOINT_FILE = "genetic.ckpt";
+    private static final String OPTIMIZER = "GeneticAlgorithm";
+    private static final String HEURISTICS_FILE = "heuristics_%s.txt";
+    private static final String BEST_HEURISTICS_FILE = "best_heuristic.txt";
     private static final int POPULATION_SIZE = 1000;
     private static final int NUM_ITERATIONS = 1000;
+    // With a transport set, the best individuals leave for the next island every MIGRATION_INTERVAL
+    // iterations, and those sent here take the place of the worst
+    private static final int MIGRATION_INTERVAL = 10;
+    private static final int MIGRANTS = 5;
     private static final ArrayList<Feature> FEATURES = new ArrayList<>();
-    private ArrayList<Heuristic> population;
-    private int currIteration;
-    private ArrayList<Double> scores;
-    private Heuristic currentBestHeuristic;
-    private Double currentBestScore;
-    private final Random random = new Random();
-
-    public GeneticAlgorithm(String startFile) {
-        // Make experiments directory
-        new File(EXPERIMENTS_DIR).mkdirs();
 
+    static {
         // Maximize
         FEATURES.add(new RowsClearedFeature());
         // Minimize
@@ -54,19 +75,141 @@ public class GeneticAlgorithm {
         FEATURES.add(new ColTransitionsFeature());
         FEATURES.add(new HoleFeature());
         FEATURES.add(new WellFeature());
+    }
+
+    private final int populationSize;
+    private final String experimentsDir;
+    // Breed a child whenever one finishes playing instead of a generation at a time, so no game
+    // holds the others up; an iteration is then a population's worth of children
+    private final boolean steadyState;
+    private MigrationTransport transport;
+    private ArrayList<Heuristic> population;
+    private int currIteration;
+    private double[] scores;
+    // Games each individual of the last generation played
+    private int[] games;
+    private int dropped;
+    private int cached;
+    private final FitnessCache cache;
+    // Mean score of the parents of each individual, null for a random population
+    private double[] expected;
+    private Heuristic currentBestHeuristic;
+    private double currentBestScore;
+    // Reseeded at every checkpoint, so a resumed run draws what an uninterrupted one would
+    private Random random = new Random();
+    private CheckpointWriter checkpoints;
+    // Whether the population was scored before the run started, i.e. resumed from a checkpoint
+    private boolean scored = false;
+
+    public GeneticAlgorithm(String startFile) {
+        this(startFile, false);
+    }
+
+    /**
+     * @param startFile population to start from, if it exists
+     * @param steadyState whether to run steady state rather than a generation at a time
+     */
+    public GeneticAlgorithm(String startFile, boolean steadyState) {
+        this(startFile, POPULATION_SIZE, EXPERIMENTS_DIR, steadyState);
+    }
+
+    /**
+     * @param startFile population to start from, if it exists
+     * @param populationSize individuals in the population
+     * @param experimentsDir directory the heuristics files are written to
+     * @param steadyState whether to run steady state rather than a generation at a time
+     */
+    GeneticAlgorithm(String startFile, int populationSize, String experimentsDir, boolean steadyState) {
+        this.populationSize = populationSize;
+        this.experimentsDir = experimentsDir;
+        this.steadyState = steadyState;
+        this.cache = new FitnessCache(FITNESS_CACHE_PER_INDIVIDUAL * populationSize);
+
+        // Make experiments directory
+        new File(experimentsDir).mkdirs();
 
         this.currentBestHeuristic = new Heuristic(FEATURES);
         this.currentBestScore = 0.;
 
         currIteration = 0;
 
-        File start = new File(START_FILE);
+        this.population = newRandomPopulation();
+        scores = new double[populationSize];
+
+        File start = new File(startFile);
         if (start.exists()) {
             loadFile(start);
         }
-        this.population = newRandomPopulation();
 
-        scores = new ArrayList<>(Collections.nCopies(POPULATION_SIZE, 0.0));
+        File checkpointFile = new File(experimentsDir, CHECKPOINT_FILE);
+        try {
+            Checkpoint checkpoint = CheckpointReader.readOrSetAside(checkpointFile, OPTIMIZER, FEATURES);
+            if (checkpoint != null && !resume(checkpoint)) {
+                System.err.println("Moved " + checkpointFile + " to " + CheckpointWriter.setAside(checkpointFile));
+            }
+            checkpoints = new CheckpointWriter(checkpointFile, OPTIMIZER, FEATURES);
+        } catch (IOException e) {
+            // A run without checkpoints would be lost to the first crash
+            throw new UncheckedIOException("Cannot checkpoint to " + checkpointFile, e);
+        }
+    }
+
+    // Takes up the run where the checkpoint left it, returns false if the checkpoint does not fit this run
+    private boolean resume(Checkpoint checkpoint) {
+        if (checkpoint.positions.length != populationSize) {
+            System.err.println("Checkpoint has " + checkpoint.positions.length + " individuals, not resuming");
+            return false;
+        }
+        ArrayList<Heuristic> newPopulation = new ArrayList<>();
+        for (double[] weights : checkpoint.positions) {
+            newPopulation.add(new Heuristic(FEATURES, weights));
+        }
+        population = newPopulation;
+        scores = checkpoint.scores;
+        games = checkpoint.games;
+        currIteration = checkpoint.iteration;
+        currentBestHeuristic = new Heuristic(FEATURES, checkpoint.globalBest);
+        currentBestScore = checkpoint.globalBestScore;
+        random = new Random(checkpoint.randomSeed);
+        scored = true;
+        System.out.println("Resumed from iteration " + currIteration);
+        return true;
+    }
+
+    /**
+     * Appends the population and its scores to the checkpoint file
+     */
+    private void checkpoint() {
+        if (checkpoints == null) {
+            return;
+        }
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.iteration = currIteration;
+        checkpoint.randomSeed = random.nextLong();
+        random = new Random(checkpoint.randomSeed);
+        checkpoint.positions = new double[populationSize][];
+        for (int i = 0; i < populationSize; i++) {
+            checkpoint.positions[i] = population.get(i).getWeights();
+        }
+        checkpoint.scores = scores;
+        checkpoint.games = games;
+        checkpoint.globalBest = currentBestHeuristic.getWeights();
+        checkpoint.globalBestScore = currentBestScore;
+        try {
+            checkpoints.append(checkpoint);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeCheckpoints() {
+        if (checkpoints != null) {
+            try {
+                checkpoints.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -80,20 +223,21 @@ public class GeneticAlgorithm {
             line = br.readLine();
             currIteration = Integer.parseInt(line);
             ArrayList<Heuristic> newPopulation = new ArrayList<>();
-            ArrayList<Double> newScores = new ArrayList<>();
-            System.out.println("Loading heuristics from " + START_FILE);
+            double[] newScores = new double[populationSize];
+            int n = 0;
+            System.out.println("Loading heuristics from " + startFile);
             while((line = br.readLine()) != null) {
                 String[] lineArray = line.split(",");
-                Double[] featureWeights = new Double[FEATURES.size()];
+                double[] featureWeights = new double[FEATURES.size()];
                 for (int i = 0; i < lineArray.length - 1; i++) {
                     featureWeights[i] = Double.parseDouble(lineArray[i]);
                 }
-                newScores.add(Double.parseDouble(lineArray[lineArray.length - 1]));
+                newScores[n++] = Double.parseDouble(lineArray[lineArray.length - 1]);
                 newPopulation.add(new Heuristic(FEATURES, featureWeights));
             }
 
-            assert(newScores.size() == POPULATION_SIZE);
-            assert(newPopulation.size() == POPULATION_SIZE);
+            assert(n == populationSize);
+            assert(newPopulation.size() == populationSize);
             scores = newScores;
             population = newPopulation;
             System.out.println("Heuristics successfully loaded");
@@ -106,28 +250,179 @@ public class GeneticAlgorithm {
 
     private ArrayList<Heuristic> newRandomPopulation() {
         ArrayList<Heuristic> newPopulation = new ArrayList<>();
-        for (int i = 0; i < POPULATION_SIZE; i++) {
+        for (int i = 0; i < populationSize; i++) {
             newPopulation.add(new Heuristic(FEATURES));
         }
 
         return newPopulation;
     }
 
-    private void run() {
+    // Who a child replaces in steady state
+    private enum Replacement {
+        // The worst individual, if the child beats it
+        WORST,
+        // The worst of TOURNAMENT_SIZE individuals drawn uniformly
+        TOURNAMENT
+    }
+
+    /**
+     * @param transport carries migrants to and from the other islands, null to run alone
+     */
+    void setTransport(MigrationTransport transport) {
+        this.transport = transport;
+    }
+
+    void run() {
+        if (steadyState) {
+            runSteadyState();
+        } else {
+            while (currIteration < NUM_ITERATIONS) {
+                File heuristicsFile = new File(experimentsDir, String.format(HEURISTICS_FILE, currIteration));
+                File bestHeuristicsFile = new File(experimentsDir, BEST_HEURISTICS_FILE);
+                population = nextGeneration(population);
+                logIteration();
+                writeToFile(heuristicsFile);
+                updateBest(bestHeuristicsFile);
+                currIteration++;
+            }
+        }
+        closeCheckpoints();
+    }
+
+    /**
+     * Steady-state GA: the first population is scored as a generation, after
+     * which a fixed number of children are always in play. As soon as one
+     * finishes it takes the place of an individual and the next child is bred
+     * from the population as it then is. Children play NUM_GAMES games each,
+     * each a task of its own, on pieces of their own since there is no
+     * generation to share seeds with.
+     */
+    private void runSteadyState() {
+        if (!scored) {
+            playGames();
+        }
+        dropped = 0;
+        cached = 0;
+        EvaluationService service = EvaluationService.getShared();
+        EvaluationService.Batch<Scorer> batch = service.newBatch();
+        SplittableRandom rng = new SplittableRandom(random.nextLong());
+        // Games so far of each child in play, and how many of them failed
+        Map<Heuristic, Scorer> playing = new IdentityHashMap<>();
+        Map<Heuristic, Integer> failed = new IdentityHashMap<>();
+        // Child playing each game in flight, by task index
+        Map<Integer, Heuristic> owners = new HashMap<>();
+        // Built once per iteration and kept up to date as children take their places
+        Selection selection = Selection.of(SELECTION, scores, TOURNAMENT_SIZE);
+        for (int i = 0; i < CHILDREN_PER_THREAD * service.getThreads(); i++) {
+            submitChild(batch, selection, playing, owners, rng);
+        }
+
+        int births = 0;
         do {
-            File heuristicsFile = new File(String.format(HEURISTICS_FILE, currIteration));
-            File bestHeuristicsFile = new File(BEST_HEURISTICS_FILE);
-            population = nextGeneration(population);
-            logIteration();
-            writeToFile(heuristicsFile);
-            updateBest(bestHeuristicsFile);
-            currIteration++;
+            int task;
+            try {
+                task = batch.next();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            Heuristic child = owners.remove(task);
+            Scorer games = playing.get(child);
+            try {
+                games.addAll(batch.take(task));
+            } catch (Exception e) {
+                // A failed game still counts towards its child's NUM_GAMES
+                e.printStackTrace();
+                failed.merge(child, 1, Integer::sum);
+            }
+            if (games.scores.size() + failed.getOrDefault(child, 0) < NUM_GAMES) {
+                continue;
+            }
+            playing.remove(child);
+            failed.remove(child);
+            if (games.scores.isEmpty()) {
+                // Every game of the child failed, so it takes no one's place
+                submitChild(batch, selection, playing, owners, rng);
+                continue;
+            }
+            int replaced = replace(games, rng);
+            if (replaced != -1) {
+                selection.update(replaced, scores[replaced]);
+            }
+            if (++births % populationSize == 0) {
+                logIteration();
+                writeToFile(new File(experimentsDir, String.format(HEURISTICS_FILE, currIteration)));
+                updateBest(new File(experimentsDir, BEST_HEURISTICS_FILE));
+                migrate();
+                cached = 0;
+                currIteration++;
+                // Children in play are not saved, so a resumed run starts the next iteration afresh
+                checkpoint();
+                // Migrants changed scores behind the selection's back
+                selection = Selection.of(SELECTION, scores, TOURNAMENT_SIZE);
+            }
+            submitChild(batch, selection, playing, owners, rng);
         } while (currIteration < NUM_ITERATIONS);
+        // The children still in play are not needed any more
+        batch.cancel();
+    }
+
+    // Breeds a child from the current population and starts its games
+    private void submitChild(EvaluationService.Batch<Scorer> batch, Selection selection,
+            Map<Heuristic, Scorer> playing, Map<Integer, Heuristic> owners, SplittableRandom rng) {
+        int x = selection.select(rng);
+        int y = selection.select(rng);
+        Heuristic child = breed(population.get(x), population.get(y), rng);
+        playing.put(child, new Scorer(child));
+        // Children of good parents play long games, so they start first
+        for (int g = 0; g < NUM_GAMES; g++) {
+            owners.put(batch.submit(new GameTask(child, null, MAX_PIECES), (scores[x] + scores[y]) / 2), child);
+        }
+    }
+
+    // Puts a child that finished playing in the place of an individual, returns its index or -1 if none
+    private int replace(Scorer result, SplittableRandom rng) {
+        Heuristic child = result.player.heuristic;
+        Scorer known = cache.get(child.getWeights());
+        if (known != null) {
+            Scorer pooled = new Scorer(child);
+            pooled.addAll(known);
+            pooled.addAll(result);
+            result = pooled;
+            cached++;
+        }
+        cache.put(child.getWeights(), result);
+        double score = result.getEstimatedScore();
+
+        int loser;
+        if (REPLACEMENT == Replacement.WORST) {
+            loser = 0;
+            for (int i = 1; i < scores.length; i++) {
+                if (scores[i] < scores[loser]) {
+                    loser = i;
+                }
+            }
+            if (score <= scores[loser]) {
+                return -1;
+            }
+        } else {
+            loser = rng.nextInt(scores.length);
+            for (int k = 1; k < TOURNAMENT_SIZE; k++) {
+                int i = rng.nextInt(scores.length);
+                if (scores[i] < scores[loser]) {
+                    loser = i;
+                }
+            }
+        }
+        population.set(loser, child);
+        scores[loser] = score;
+        games[loser] = result.scores.size();
+        return loser;
     }
 
     private void updateBest(File file) {
         int best = bestIndividual();
-        double score = scores.get(best);
+        double score = scores[best];
         if (score > currentBestScore) {
             currentBestHeuristic = population.get(best);
             currentBestScore = score;
@@ -138,11 +433,11 @@ public class GeneticAlgorithm {
     private void writeBestHeuristic(File file) {
         try {
             BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-            Double[] weights = currentBestHeuristic.getWeights();
+            double[] weights = currentBestHeuristic.getWeights();
             for (int i = 0; i < FEATURES.size(); i++) {
-                writer.write(weights[i].toString() + ",");
+                writer.write(Double.toString(weights[i]) + ",");
             }
-            writer.write(currentBestScore.toString());
+            writer.write(Double.toString(currentBestScore));
             writer.newLine();
             writer.close();
         } catch (Exception e) {
@@ -157,11 +452,11 @@ public class GeneticAlgorithm {
             writer.newLine();
             for (int i = 0; i < population.size(); i++) {
                 Heuristic curr = population.get(i);
+                double[] weight = curr.getWeights();
                 for (int j = 0; j < FEATURES.size(); j++) {
-                    Double[] weight = curr.getWeights();
-                    writer.write(weight[j].toString() + ",");
+                    writer.write(Double.toString(weight[j]) + ",");
                 }
-                writer.write(scores.get(i).toString());
+                writer.write(Double.toString(scores[i]));
                 writer.newLine();
             }
             writer.close();
@@ -172,72 +467,121 @@ public class GeneticAlgorithm {
     }
 
     private ArrayList<Heuristic> nextGeneration(ArrayList<Heuristic> population) {
-        playGames();
-        ArrayList<Heuristic> newPopulation = new ArrayList<>();
-        for (int i = 0; i < POPULATION_SIZE; i++) {
-            Heuristic x = randomSelection(population);
-            Heuristic y = randomSelection(population);
+        // A resumed run picks up with the scored population of its checkpoint
+        if (scored) {
+            scored = false;
+        } else {
+            playGames();
+            migrate();
+            checkpoint();
+        }
+        Selection selection = Selection.of(SELECTION, scores, TOURNAMENT_SIZE);
 
-            Heuristic child = reproduce(x, y);
+        // Children are made in parallel, each from a generator split off in order so a run is repeatable
+        SplittableRandom root = new SplittableRandom(random.nextLong());
+        SplittableRandom[] randoms = new SplittableRandom[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            randoms[i] = root.split();
+        }
+        Heuristic[] children = new Heuristic[populationSize];
+        double[] newExpected = new double[populationSize];
+        IntStream.range(0, populationSize).parallel().forEach(i -> {
+            SplittableRandom rng = randoms[i];
+            int x = selection.select(rng);
+            int y = selection.select(rng);
+            newExpected[i] = (scores[x] + scores[y]) / 2;
+            children[i] = breed(population.get(x), population.get(y), rng);
+        });
+        expected = newExpected;
+        return new ArrayList<>(Arrays.asList(children));
+    }
 
-            if (random.nextDouble() < MUTATION_PROBABILITY) {
-                child = mutate(child);
+    /**
+     * Every MIGRATION_INTERVAL iterations, sends copies of the best individuals
+     * to the next island and puts the migrants received since the last time in
+     * place of the worst. Migrants keep the score they had on their island.
+     */
+    private void migrate() {
+        if (transport == null || currIteration % MIGRATION_INTERVAL != 0) {
+            return;
+        }
+        Integer[] order = new Integer[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            order[i] = i;
+        }
+        // Best first
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        try {
+            List<Migrant> emigrants = new ArrayList<>();
+            for (int k = 0; k < Math.min(MIGRANTS, populationSize); k++) {
+                int i = order[k];
+                emigrants.add(new Migrant(population.get(i).getWeights(), scores[i], games[i]));
             }
+            transport.send(emigrants);
 
-            newPopulation.add(child);
+            int k = populationSize - 1;
+            for (Migrant migrant : transport.receive()) {
+                if (migrant.getWeights().length != FEATURES.size() || k < MIGRANTS) {
+                    continue;
+                }
+                int i = order[k--];
+                population.set(i, new Heuristic(FEATURES, migrant.getWeights()));
+                scores[i] = migrant.getScore();
+                games[i] = migrant.getGames();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        return newPopulation;
     }
 
-    private Heuristic mutate(Heuristic child) {
-        Double[] weights = child.getWeights();
-        int c = random.nextInt(FEATURES.size());
-        Double[] newWeights = new Double[weights.length];
-        for (int i = 0; i < weights.length; i++) {
-            newWeights[i] = weights[i];
-        }
+    private Heuristic breed(Heuristic x, Heuristic y, SplittableRandom rng) {
+        Heuristic child = reproduce(x, y, rng);
 
-        newWeights[c] = newWeights[c] + rn();
+        if (rng.nextDouble() < MUTATION_PROBABILITY) {
+            child = mutate(child, rng);
+        }
 
-        return new Heuristic(FEATURES, newWeights);
+        return child;
     }
 
-    private double rn() {
-        return random.nextDouble() - 0.5;
+    private Heuristic mutate(Heuristic child, SplittableRandom rng) {
+        double[] newWeights = child.getWeights().clone();
+        int c = rng.nextInt(FEATURES.size());
+        newWeights[c] += rng.nextDouble() - 0.5;
+
+        return new Heuristic(FEATURES, newWeights);
     }
 
     private void playGames() {
-        List<Future<Double>> futureScores = new ArrayList<>();
-
-        ExecutorService executor = Executors.newFixedThreadPool(100);
-
-        for (int j = 0; j < POPULATION_SIZE; j++) {
-            Heuristic individual = population.get(j);
-            HeuristicRunner runner = new HeuristicRunner(individual);
-            Future<Double> score = executor.submit(runner);
-            futureScores.add(score);
+        RacingEvaluator evaluator = new RacingEvaluator(EvaluationService.getShared(), MIN_GAMES, MAX_GAMES, NUM_GAMES);
+        evaluator.setMaxPieces(MAX_PIECES);
+        if (COMMON_SEEDS) {
+            evaluator.setSeeds(newSeeds());
         }
+        evaluator.setCache(cache);
+        // Children of good parents play long games, so they start first
+        this.scores = evaluator.evaluate(population, expected);
+        this.games = evaluator.getGames();
+        this.dropped = evaluator.getDropped();
+        this.cached = evaluator.getCached();
+    }
 
-        for (int k = 0; k < futureScores.size(); k++) {
-            try {
-                Double score = futureScores.get(k).get();
-                this.scores.set(k, score);
-            } catch(Exception e) {
-                e.printStackTrace();
-            }
+    private long[] newSeeds() {
+        long[] seeds = new long[MAX_GAMES];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
         }
-
-        executor.shutdown();
+        return seeds;
     }
 
-    private Heuristic reproduce(Heuristic x, Heuristic y) {
-        Double[] weight1 = x.getWeights();
-        Double[] weight2 = y.getWeights();
-        Double crossoverRate = 0.5;
-        Double[] resultHeuristics = new Double[FEATURES.size()];
+    private Heuristic reproduce(Heuristic x, Heuristic y, SplittableRandom rng) {
+        double[] weight1 = x.getWeights();
+        double[] weight2 = y.getWeights();
+        double crossoverRate = 0.5;
+        double[] resultHeuristics = new double[FEATURES.size()];
 
         for (int i = 0; i < FEATURES.size(); i++) {
-            Double next = random.nextDouble();
+            double next = rng.nextDouble();
             if (next <= crossoverRate) {
                 resultHeuristics[i] = weight1[i];
             } else {
@@ -247,58 +591,20 @@ public class GeneticAlgorithm {
         return new Heuristic(FEATURES, resultHeuristics);
     }
 
-    private Heuristic randomSelection(ArrayList<Heuristic> population) {
-        Heuristic selected = population.get(population.size() - 1);
-
-        double[] fValues  = new double[population.size()];
-        for (int i = 0; i < population.size(); i++) {
-            fValues[i] = scores.get(i);
-        }
-
-        fValues = normalize(fValues);
-        double prob = random.nextDouble();
-        double totalSoFar = 0.0;
-
-        for (int i = 0; i < fValues.length; i++) {
-            totalSoFar += fValues[i];
-            if (prob <= totalSoFar) {
-                selected = population.get(i);
-                break;
-            }
-        }
-
-        return selected;
-    }
-
-    private double[] normalize(double[] values) {
-        int len = values.length;
-        double total = 0.0;
-        for (double d : values) {
-            total = total + d;
-        }
-
-        double[] normalized = new double[len];
-        if (total != 0) {
-            for (int i = 0; i < len; i++) {
-                normalized[i] = values[i] / total;
-            }
-        }
-
-        return normalized;
-    }
-
     private void logIteration() {
         int best = bestIndividual();
         System.out.println("Iteration: " + currIteration);
         System.out.println("Iteration's Best Individual: " + Arrays.toString(population.get(best).getWeights()));
-        System.out.println("Score: " + scores.get(best));
+        System.out.println("Score: " + scores[best] + " (" + games[best] + " games)");
+        System.out.println("Individuals dropped by racing: " + dropped);
+        System.out.println("Individuals found in the fitness cache: " + cached);
     }
 
     private int bestIndividual() {
         int index = -1;
         double max = - Double.MAX_VALUE;
-        for (int i = 0; i < scores.size(); i++) {
-            Double score = scores.get(i);
+        for (int i = 0; i < scores.length; i++) {
+            double score = scores[i];
             if (score > max) {
                 max = score;
                 index = i;
@@ -307,29 +613,11 @@ public class GeneticAlgorithm {
         return index;
     }
 
+    /**
+     * Usage: GeneticAlgorithm [--steady-state]
+     */
     public static void main(String[] args) {
-        GeneticAlgorithm ga = new GeneticAlgorithm(START_FILE);
+        GeneticAlgorithm ga = new GeneticAlgorithm(START_FILE, Arrays.asList(args).contains("--steady-state"));
         ga.run();
     }
-
-    private class HeuristicRunner implements Callable<Double> {
-        private Scorer scorer;
-
-        public HeuristicRunner (Heuristic heuristic) {
-            this.scorer = new Scorer(heuristic);
-        }
-
-        @Override
-        public Double call() {
-            for (int j = 0; j < NUM_GAMES; j++) {
-                scorer.play();
-            }
-
-            Double averageScore = scorer.getAverageScore();
-
-            return averageScore;
-
-        }
-    }
-
 }
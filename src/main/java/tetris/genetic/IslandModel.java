@@ -0,0 +1,135 @@
+package tetris.genetic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tetris.scorer.EvaluationService;
+
+/**
+ * Runs several GeneticAlgorithm populations, the islands, which every few
+ * iterations send their best individuals to the next island of a ring. Each
+ * island evolves on its own between migrations, so islands scale with the
+ * cores or machines they get, and an island that dies only takes its own
+ * population with it: the ring closes up around it.
+ *
+ * Islands run either as threads of this JVM, sharing its evaluation threads,
+ * or as one JVM each, splitting the processors between them. Threads can
+ * migrate through any transport; processes need sockets or a directory. To
+ * spread islands over machines, start each with --island on its own box,
+ * with the directory transport on a shared mount.
+ *
+ * Usage:
+ *   IslandModel [--steady-state] islands [queue|socket|directory] [threads|processes]
+ *   IslandModel [--steady-state] --island i islands socket|directory
+ * With --steady-state every island runs a steady-state GA.
+ */
+public class IslandModel {
+    private static final int ISLAND_POPULATION_SIZE = 200;
+    private static final String START_FILE = "heuristics.txt";
+    private static final String EXPERIMENTS_DIR = "experiments/";
+    private static final String MIGRATION_DIR = EXPERIMENTS_DIR + "migration/";
+    private static final String HOST = "localhost";
+    private static final int BASE_PORT = 47100;
+    private static final String STEADY_STATE = "--steady-state";
+
+    private static boolean steadyState = false;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(STEADY_STATE)) {
+            steadyState = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length > 0 && args[0].equals("--island")) {
+            int island = Integer.parseInt(args[1]);
+            int islands = Integer.parseInt(args[2]);
+            runIsland(island, newTransport(args[3], island, islands));
+            return;
+        }
+
+        int islands = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        String transport = args.length > 1 ? args[1] : "queue";
+        boolean processes = args.length > 2 && args[2].equals("processes");
+        if (processes) {
+            runProcesses(islands, transport);
+        } else {
+            runThreads(islands, transport);
+        }
+    }
+
+    private static void runThreads(int islands, String transport) throws Exception {
+        QueueTransport[] queues = transport.equals("queue") ? QueueTransport.ring(islands) : null;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < islands; i++) {
+            MigrationTransport t = queues != null ? queues[i] : newTransport(transport, i, islands);
+            int island = i;
+            Thread thread = new Thread(() -> runIsland(island, t), "island-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void runProcesses(int islands, String transport) throws Exception {
+        if (transport.equals("queue")) {
+            throw new IllegalArgumentException("Islands in separate processes need a socket or directory transport");
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        // Not getShared(), which would start a pool, or a coordinator, that this process never uses
+        int threads = Math.max(1, Integer.getInteger(EvaluationService.THREADS_PROPERTY,
+                Runtime.getRuntime().availableProcessors()) / islands);
+        List<Process> children = new ArrayList<>();
+        for (int i = 0; i < islands; i++) {
+            List<String> command = new ArrayList<>(Arrays.asList(java,
+                    "-D" + EvaluationService.THREADS_PROPERTY + "=" + threads,
+                    "-cp", System.getProperty("java.class.path"),
+                    IslandModel.class.getName()));
+            if (steadyState) {
+                command.add(STEADY_STATE);
+            }
+            command.addAll(Arrays.asList("--island", "" + i, "" + islands, transport));
+            children.add(new ProcessBuilder(command)
+                    .inheritIO()
+                    .start());
+        }
+        // A dead island is reported but the others carry on
+        for (int i = 0; i < islands; i++) {
+            int status = children.get(i).waitFor();
+            if (status != 0) {
+                System.err.println("Island " + i + " exited with status " + status);
+            }
+        }
+    }
+
+    private static MigrationTransport newTransport(String transport, int island, int islands) throws IOException {
+        switch (transport) {
+            case "socket":
+                return new SocketTransport(HOST, BASE_PORT, island, islands);
+            case "directory":
+                return new DirectoryTransport(new File(MIGRATION_DIR), island, islands);
+            default:
+                throw new IllegalArgumentException("Unknown transport " + transport);
+        }
+    }
+
+    private static void runIsland(int island, MigrationTransport transport) {
+        try {
+            GeneticAlgorithm ga = new GeneticAlgorithm(START_FILE, ISLAND_POPULATION_SIZE,
+                    EXPERIMENTS_DIR + "island_" + island + "/", steadyState);
+            ga.setTransport(transport);
+            ga.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
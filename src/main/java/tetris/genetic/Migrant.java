@@ -0,0 +1,66 @@
+package tetris.genetic;
+
+import java.util.Arrays;
+
+/**
+ * An individual sent from one island to another: its weights, the score it
+ * had on its island and the games that score rests on. On the wire a migrant
+ * is one line, "games,score,weight,weight,...", in the same decimal form as
+ * the heuristics files.
+ */
+public class Migrant {
+    private final double[] weights;
+    private final double score;
+    private final int games;
+
+    public Migrant(double[] weights, double score, int games) {
+        this.weights = weights.clone();
+        this.score = score;
+        this.games = games;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the line is not a migrant
+     */
+    public static Migrant parse(String line) {
+        String[] fields = line.split(",");
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("Not a migrant: " + line);
+        }
+        try {
+            double[] weights = new double[fields.length - 2];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = Double.parseDouble(fields[i + 2]);
+            }
+            return new Migrant(weights, Double.parseDouble(fields[1]), Integer.parseInt(fields[0]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a migrant: " + line, e);
+        }
+    }
+
+    public String toLine() {
+        StringBuilder line = new StringBuilder();
+        line.append(games).append(',').append(Double.toString(score));
+        for (double weight : weights) {
+            line.append(',').append(Double.toString(weight));
+        }
+        return line.toString();
+    }
+
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(weights) + " " + score;
+    }
+}
@@ -0,0 +1,32 @@
+package tetris.genetic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Carries migrants between the islands of an island model. Islands form a
+ * ring: each sends to the next island that is still alive, skipping dead
+ * ones, so the ring closes up around an island that dies. Migrants sent to
+ * an island that dies before taking them in are lost.
+ *
+ * Each island has a transport of its own. Sending must not wait for the
+ * receiving island, and receiving never waits for migrants to arrive.
+ */
+public interface MigrationTransport extends Closeable {
+    /**
+     * Sends migrants to the next live island, or drops them if there is none
+     */
+    void send(List<Migrant> migrants) throws IOException;
+
+    /**
+     * @return migrants that arrived since the last call, oldest first
+     */
+    List<Migrant> receive() throws IOException;
+
+    /**
+     * Leaves the ring; other islands then skip this one
+     */
+    @Override
+    void close() throws IOException;
+}
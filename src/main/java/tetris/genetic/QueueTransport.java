@@ -0,0 +1,65 @@
+package tetris.genetic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Migration between islands running as threads of one JVM, through a bounded
+ * queue per island. An island whose queue is full loses its oldest migrants.
+ */
+public class QueueTransport implements MigrationTransport {
+    // Migrants waiting for an island at most
+    private static final int CAPACITY = 1000;
+
+    private final QueueTransport[] ring;
+    private final int island;
+    private final BlockingQueue<Migrant> inbox = new ArrayBlockingQueue<>(CAPACITY);
+    private volatile boolean open = true;
+
+    private QueueTransport(QueueTransport[] ring, int island) {
+        this.ring = ring;
+        this.island = island;
+    }
+
+    /**
+     * @param islands number of islands
+     * @return the transport of each island
+     */
+    public static QueueTransport[] ring(int islands) {
+        QueueTransport[] ring = new QueueTransport[islands];
+        for (int i = 0; i < islands; i++) {
+            ring[i] = new QueueTransport(ring, i);
+        }
+        return ring;
+    }
+
+    @Override
+    public void send(List<Migrant> migrants) {
+        for (int k = 1; k < ring.length; k++) {
+            QueueTransport next = ring[(island + k) % ring.length];
+            if (next.open) {
+                for (Migrant migrant : migrants) {
+                    while (!next.inbox.offer(migrant)) {
+                        next.inbox.poll();
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<Migrant> receive() {
+        List<Migrant> migrants = new ArrayList<>();
+        inbox.drainTo(migrants);
+        return migrants;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        inbox.clear();
+    }
+}
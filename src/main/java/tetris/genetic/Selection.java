@@ -0,0 +1,189 @@
+package tetris.genetic;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Picks parents from a scored population. Built once per generation, after
+ * which each pick is O(log n) (proportional, rank) or O(k) (tournament) and
+ * allocates nothing. Picks only read the selection, so several threads can
+ * pick at once, each with its own generator.
+ *
+ * A steady-state run changes one score at a time, which update() takes in
+ * O(n) at worst (O(1) for tournaments) rather than a rebuild with a sort. It
+ * must not run while other threads pick.
+ */
+public abstract class Selection {
+    public enum Type {
+        // Chance proportional to the score
+        PROPORTIONAL,
+        // Chance proportional to the rank, the worst individual having rank 1
+        RANK,
+        // Best of a few individuals drawn uniformly
+        TOURNAMENT
+    }
+
+    /**
+     * @param type selection scheme
+     * @param scores score of each individual
+     * @param tournamentSize individuals per tournament, only used by TOURNAMENT
+     */
+    public static Selection of(Type type, double[] scores, int tournamentSize) {
+        switch (type) {
+            case PROPORTIONAL:
+                return new Cumulative(scores.clone());
+            case RANK:
+                return new Rank(scores.clone());
+            case TOURNAMENT:
+                return new Tournament(scores.clone(), tournamentSize);
+            default:
+                throw new IllegalArgumentException("Unknown selection " + type);
+        }
+    }
+
+    /**
+     * @return index of the picked individual
+     */
+    public abstract int select(SplittableRandom random);
+
+    /**
+     * Picks from now on as if the individual had the given score when the selection was built
+     * @param index individual whose score changed
+     * @param score its new score
+     */
+    public abstract void update(int index, double score);
+
+    // Rank of each score from 1 for the lowest, ties broken by index
+    private static double[] ranks(double[] scores) {
+        Integer[] order = new Integer[scores.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+        double[] ranks = new double[scores.length];
+        for (int r = 0; r < order.length; r++) {
+            ranks[order[r]] = r + 1;
+        }
+        return ranks;
+    }
+
+    // Binary search over the running total of the weights
+    private static class Cumulative extends Selection {
+        final double[] weights;
+        private final double[] cumulative;
+
+        Cumulative(double[] weights) {
+            this.weights = weights;
+            cumulative = weights.clone();
+            for (int i = 1; i < cumulative.length; i++) {
+                cumulative[i] += cumulative[i - 1];
+            }
+        }
+
+        @Override
+        public void update(int index, double score) {
+            weights[index] = score;
+            sum(index);
+        }
+
+        // Running totals from the index on, added up as the constructor does
+        void sum(int from) {
+            for (int i = from; i < cumulative.length; i++) {
+                cumulative[i] = i == 0 ? weights[0] : cumulative[i - 1] + weights[i];
+            }
+        }
+
+        @Override
+        public int select(SplittableRandom random) {
+            int n = cumulative.length;
+            double total = cumulative[n - 1];
+            if (!(total > 0)) {
+                // Nothing scored: every individual is as good as any other
+                return random.nextInt(n);
+            }
+            // First individual whose running total reaches the draw
+            double draw = random.nextDouble() * total;
+            int lo = 0;
+            int hi = n - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] < draw) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    // Weights are ranks, which an update shifts by one for every individual it passes
+    private static class Rank extends Cumulative {
+        private final double[] scores;
+
+        Rank(double[] scores) {
+            super(ranks(scores));
+            this.scores = scores;
+        }
+
+        @Override
+        public void update(int index, double score) {
+            double old = scores[index];
+            scores[index] = score;
+            int rank = 1;
+            int from = index;
+            for (int i = 0; i < scores.length; i++) {
+                if (i == index) {
+                    continue;
+                }
+                boolean wasBelow = below(scores[i], i, old, index);
+                boolean isBelow = below(scores[i], i, score, index);
+                if (isBelow) {
+                    rank++;
+                }
+                if (wasBelow != isBelow) {
+                    weights[i] += isBelow ? -1 : 1;
+                    from = Math.min(from, i);
+                }
+            }
+            weights[index] = rank;
+            sum(from);
+        }
+
+        // Whether score a of individual i ranks below score b of individual j, ties broken by index
+        private static boolean below(double a, int i, double b, int j) {
+            int c = Double.compare(a, b);
+            return c < 0 || (c == 0 && i < j);
+        }
+    }
+
+    private static class Tournament extends Selection {
+        private final double[] scores;
+        private final int size;
+
+        Tournament(double[] scores, int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("Tournament size must be at least 1");
+            }
+            this.scores = scores;
+            this.size = size;
+        }
+
+        @Override
+        public void update(int index, double score) {
+            scores[index] = score;
+        }
+
+        @Override
+        public int select(SplittableRandom random) {
+            int best = random.nextInt(scores.length);
+            for (int k = 1; k < size; k++) {
+                int i = random.nextInt(scores.length);
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package tetris.genetic;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Migration over TCP: island i listens on basePort + i of its host, and a
+ * send opens a connection to the next island, writes one migrant per line
+ * and closes it. An island that refuses the connection is taken as dead and
+ * the one after it is tried. All islands may share a host, e.g. localhost
+ * to try a multi-machine setup on one box.
+ */
+public class SocketTransport implements MigrationTransport {
+    private static final int CAPACITY = 1000;
+    private static final int TIMEOUT = 2000;
+
+    private final String[] hosts;
+    private final int basePort;
+    private final int island;
+    private final ServerSocket server;
+    private final BlockingQueue<Migrant> inbox = new ArrayBlockingQueue<>(CAPACITY);
+
+    /**
+     * Islands all on one host
+     * @param host host of every island
+     * @param basePort port of island 0; island i listens on basePort + i
+     * @param island this island
+     * @param islands number of islands
+     */
+    public SocketTransport(String host, int basePort, int island, int islands) throws IOException {
+        this(sameHost(host, islands), basePort, island);
+    }
+
+    /**
+     * @param hosts host of each island
+     * @param basePort port of island 0; island i listens on basePort + i
+     * @param island this island
+     */
+    public SocketTransport(String[] hosts, int basePort, int island) throws IOException {
+        this.hosts = hosts;
+        this.basePort = basePort;
+        this.island = island;
+        this.server = new ServerSocket(basePort + island);
+        Thread listener = new Thread(this::listen, "migration-" + island);
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    private static String[] sameHost(String host, int islands) {
+        String[] hosts = new String[islands];
+        for (int i = 0; i < islands; i++) {
+            hosts[i] = host;
+        }
+        return hosts;
+    }
+
+    @Override
+    public void send(List<Migrant> migrants) {
+        for (int k = 1; k < hosts.length; k++) {
+            int next = (island + k) % hosts.length;
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(hosts[next], basePort + next), TIMEOUT);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                for (Migrant migrant : migrants) {
+                    writer.write(migrant.toLine());
+                    writer.write('\n');
+                }
+                writer.flush();
+                return;
+            } catch (IOException e) {
+                // Dead or unreachable - try the island after it
+            }
+        }
+    }
+
+    @Override
+    public List<Migrant> receive() {
+        List<Migrant> migrants = new ArrayList<>();
+        inbox.drainTo(migrants);
+        return migrants;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    // Takes in the migrants of one connection at a time until closed
+    private void listen() {
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(TIMEOUT);
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Migrant migrant = Migrant.parse(line);
+                    while (!inbox.offer(migrant)) {
+                        inbox.poll();
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                if (!server.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.util.Random;
 import tetris.NextState;
 import tetris.feature.ColTransitionsFeature;
 import tetris.feature.Feature;
+import tetris.feature.FeatureExtractor;
 import tetris.feature.HoleFeature;
 import tetris.feature.RowTransitionsFeature;
 import tetris.feature.RowsClearedFeature;
@@ -20,44 +21,103 @@ import tetris.feature.WellFeature;
 
 public class Heuristic {
     private final int size;
-    private Double[] weights;
+    private final double[] weights;
     private ArrayList<Feature> features;
+    // Features with a fused implementation are evaluated together by the extractor
+    private final FeatureExtractor extractor;
+    private final double[] fusedWeights;
+    // Anything else falls back to Feature.getValue
+    private final Feature[] customFeatures;
+    private final double[] customWeights;
 
     /**
      * Initialize new Heuristic with random weights
      * @param features
      */
     public Heuristic(ArrayList<Feature> features) {
+        this(features, randomWeights(features.size()));
+    }
+
+    /**
+     * Initialize new Heuristic with given weights
+     * @param features
+     * @param heuristicArray
+     */
+    public Heuristic(ArrayList<Feature> features, double[] heuristicArray) {
         this.features = features;
         this.size = this.features.size();
-        Random r = new Random();
-        this.weights = new Double[this.size];
+        this.weights = heuristicArray;
+
+        ArrayList<Feature> fused = new ArrayList<>();
+        int numFused = 0;
+        for (Feature feature : features) {
+            if (feature.getId() != FeatureExtractor.UNSUPPORTED) {
+                fused.add(feature);
+                numFused++;
+            }
+        }
+        this.fusedWeights = new double[numFused];
+        this.customFeatures = new Feature[this.size - numFused];
+        this.customWeights = new double[this.size - numFused];
+        int f = 0;
+        int c = 0;
         for (int i = 0; i < this.size; i++) {
-            this.weights[i] = r.nextDouble() - 0.5; // [-0.5, 0.5]
+            if (features.get(i).getId() != FeatureExtractor.UNSUPPORTED) {
+                fusedWeights[f++] = weights[i];
+            } else {
+                customFeatures[c] = features.get(i);
+                customWeights[c++] = weights[i];
+            }
         }
+        this.extractor = numFused > 0 ? new FeatureExtractor(fused) : null;
     }
 
     /**
-     * Initialize new Heuristic with given weights
+     * Initialize new Heuristic with given boxed weights
      * @param features
      * @param heuristicArray
      */
     public Heuristic(ArrayList<Feature> features, Double[] heuristicArray) {
-        this.features = features;
-        this.size = this.features.size();
-        this.weights = heuristicArray;
+        this(features, unbox(heuristicArray));
+    }
+
+    private static double[] randomWeights(int size) {
+        Random r = new Random();
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            weights[i] = r.nextDouble() - 0.5; // [-0.5, 0.5]
+        }
+        return weights;
+    }
+
+    private static double[] unbox(Double[] weights) {
+        double[] result = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            result[i] = weights[i];
+        }
+        return result;
     }
 
     public double getValue(NextState s) {
         double sum = 0;
-        for (int i = 0; i < this.size; i++) {
-            sum += this.weights[i] * this.features.get(i).getValue(s);
+        if (extractor != null) {
+            sum = extractor.evaluate(s, fusedWeights);
+        }
+        for (int i = 0; i < customFeatures.length; i++) {
+            sum += customWeights[i] * customFeatures[i].getValue(s);
         }
 
         return sum;
     }
 
-    public Double[] getWeights() {
+    /**
+     * @return whether getValue runs on the fused FeatureExtractor
+     */
+    public boolean usesExtractor() {
+        return extractor != null;
+    }
+
+    public double[] getWeights() {
         return weights;
     }
 
@@ -0,0 +1,42 @@
+package tetris.piece;
+
+import java.util.SplittableRandom;
+
+import tetris.State;
+
+/**
+ * 7-bag generator: each run of 7 pieces is a shuffled permutation of all pieces.
+ */
+public class BagPieceSource implements PieceSource {
+    private final long seed;
+    private final SplittableRandom random;
+    private final int[] bag = new int[State.N_PIECES];
+    private int next = State.N_PIECES;
+
+    public BagPieceSource(long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = i;
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public int nextPiece() {
+        if (next == bag.length) {
+            // Fisher-Yates shuffle
+            for (int i = bag.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = bag[i];
+                bag[i] = bag[j];
+                bag[j] = tmp;
+            }
+            next = 0;
+        }
+        return bag[next++];
+    }
+}
@@ -0,0 +1,8 @@
+package tetris.piece;
+
+/**
+ * Supplies the sequence of pieces (0-6) a State plays.
+ */
+public interface PieceSource {
+    int nextPiece();
+}
@@ -0,0 +1,28 @@
+package tetris.piece;
+
+import java.util.SplittableRandom;
+
+import tetris.State;
+
+/**
+ * Uniformly random pieces from a seeded generator, so a game can be replayed
+ * from its seed.
+ */
+public class RandomPieceSource implements PieceSource {
+    private final long seed;
+    private final SplittableRandom random;
+
+    public RandomPieceSource(long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public int nextPiece() {
+        return random.nextInt(State.N_PIECES);
+    }
+}
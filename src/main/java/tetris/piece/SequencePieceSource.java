@@ -0,0 +1,63 @@
+package tetris.piece;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import tetris.State;
+
+/**
+ * Plays a fixed sequence of pieces, starting over when it runs out.
+ */
+public class SequencePieceSource implements PieceSource {
+    private final int[] pieces;
+    private int next = 0;
+
+    public SequencePieceSource(int[] pieces) {
+        if (pieces.length == 0) {
+            throw new IllegalArgumentException("Piece sequence is empty");
+        }
+        for (int piece : pieces) {
+            if (piece < 0 || piece >= State.N_PIECES) {
+                throw new IllegalArgumentException("Invalid piece: " + piece);
+            }
+        }
+        this.pieces = pieces;
+    }
+
+    /**
+     * Reads pieces (0-6) separated by whitespace or commas
+     * @param filename file to read
+     * @return source playing the pieces in the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file holds no pieces, or anything but pieces
+     */
+    public static SequencePieceSource fromFile(String filename) throws IOException {
+        String content = new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8)
+                .replaceAll("^[\\s,]+|[\\s,]+$", "");
+        if (content.isEmpty()) {
+            throw new IllegalArgumentException("No pieces in " + filename);
+        }
+        String[] tokens = content.split("[\\s,]+");
+        int[] pieces = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            try {
+                pieces[i] = Integer.parseInt(tokens[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a piece in " + filename + ": " + tokens[i]);
+            }
+            if (pieces[i] < 0 || pieces[i] >= State.N_PIECES) {
+                throw new IllegalArgumentException("Invalid piece in " + filename + ": " + tokens[i]);
+            }
+        }
+        return new SequencePieceSource(pieces);
+    }
+
+    @Override
+    public int nextPiece() {
+        int piece = pieces[next];
+        next = (next + 1) % pieces.length;
+        return piece;
+    }
+}
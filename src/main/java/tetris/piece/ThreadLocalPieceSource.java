@@ -0,0 +1,18 @@
+package tetris.piece;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import tetris.State;
+
+/**
+ * Uniformly random pieces from the calling thread's own generator, so games
+ * on different threads never contend on a shared Random. Not reproducible.
+ */
+public class ThreadLocalPieceSource implements PieceSource {
+    public static final ThreadLocalPieceSource INSTANCE = new ThreadLocalPieceSource();
+
+    @Override
+    public int nextPiece() {
+        return ThreadLocalRandom.current().nextInt(State.N_PIECES);
+    }
+}
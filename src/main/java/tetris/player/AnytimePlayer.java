@@ -0,0 +1,100 @@
+package tetris.player;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tetris.NextState;
+import tetris.State;
+import tetris.heuristic.Heuristic;
+
+/**
+ * Lookahead under a time budget: plays greedy first, then searches 1, 2 ...
+ * pieces ahead (iterative deepening) and returns the move of the deepest
+ * search that finished before the budget ran out. The clock is checked
+ * before the placements of every piece are tried, at every level of the
+ * search, so a move overruns the budget by at most the placements of one
+ * piece, plus the greedy pass which always completes.
+ *
+ * After each move getPliesCompleted() and getCandidatesCompleted() tell how
+ * far the search got.
+ */
+public class AnytimePlayer extends LookaheadPlayer {
+    private final long budget;
+    // System.nanoTime() at which the current move has to be decided
+    private volatile long deadline;
+    private volatile boolean aborted;
+    // Root moves fully searched in the current iteration
+    private final AtomicInteger candidates = new AtomicInteger();
+    private int pliesCompleted;
+    private int candidatesCompleted;
+
+    /**
+     * @param heuristic board evaluation
+     * @param budget nanoseconds to spend on each move
+     * @param maxDepth number of pieces to look ahead past the current one at most
+     */
+    public AnytimePlayer(Heuristic heuristic, long budget, int maxDepth) {
+        this(heuristic, budget, maxDepth, DEFAULT_ROOT_WIDTH, DEFAULT_BRANCHING);
+    }
+
+    public AnytimePlayer(Heuristic heuristic, long budget, int maxDepth, int rootWidth, int branching) {
+        super(heuristic, maxDepth, rootWidth, branching);
+        this.budget = budget;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return lookahead of the search the last move came from, 0 if it was greedy
+     */
+    public int getPliesCompleted() {
+        return pliesCompleted;
+    }
+
+    /**
+     * @return root moves fully searched in the last iteration of the last move,
+     *     which is the one that ran out of time unless every depth finished
+     */
+    public int getCandidatesCompleted() {
+        return candidatesCompleted;
+    }
+
+    @Override
+    public int getMove(State s) {
+        deadline = System.nanoTime() + budget;
+        aborted = false;
+        int best = getMove(s, 0);
+        pliesCompleted = 0;
+        candidatesCompleted = s.legalMoves().length;
+
+        for (int d = 1; d <= getDepth(); d++) {
+            candidates.set(0);
+            int move = getMove(s, d);
+            candidatesCompleted = candidates.get();
+            if (aborted) {
+                break;
+            }
+            best = move;
+            pliesCompleted = d;
+        }
+        return best;
+    }
+
+    @Override
+    protected double evaluate(NextState s) {
+        double value = super.evaluate(s);
+        if (!aborted) {
+            candidates.incrementAndGet();
+        }
+        return value;
+    }
+
+    @Override
+    protected boolean isAborted() {
+        if (!aborted && System.nanoTime() - deadline > 0) {
+            aborted = true;
+        }
+        return aborted;
+    }
+}
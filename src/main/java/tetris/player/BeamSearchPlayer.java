@@ -0,0 +1,320 @@
+package tetris.player;
+
+import java.util.Arrays;
+
+import tetris.NextState;
+import tetris.PieceTable;
+import tetris.State;
+import tetris.heuristic.Heuristic;
+import tetris.piece.PieceSource;
+import tetris.piece.RandomPieceSource;
+
+/**
+ * Keeps the width best boards after each of the next depth pieces (a beam)
+ * and plays the current piece move that the best final board started from.
+ * The upcoming pieces are either given to getMove(State, int[]) or sampled
+ * from a PieceSource.
+ *
+ * With sampled pieces the beam is run once per sample, and a move scores the
+ * average over the samples of the best final board it led to, or of the worst
+ * final board of the sample if it fell out of the beam. The first upcoming
+ * piece goes round all seven pieces instead of being drawn; later ones are
+ * drawn, so deeper sampled searches need several samples per piece to beat a
+ * greedy player.
+ *
+ * A move costs at most samples * width * depth * 34 evaluations whatever the
+ * board looks like; with depth 0 nothing is sampled and a move costs at most 34. Boards live in a pool of 2 * width NextStates allocated up
+ * front, and children are scored with apply/undo on their parent, so a search
+ * allocates nothing. Runs on the calling thread.
+ */
+public class BeamSearchPlayer extends Player {
+    public static final int DEFAULT_WIDTH = 16;
+    public static final int DEFAULT_DEPTH = 1;
+    public static final int DEFAULT_SAMPLES = State.N_PIECES;
+
+    private final int width;
+    private final int depth;
+    private PieceSource sampler;
+    private int samples = DEFAULT_SAMPLES;
+    private final int[] sampled;
+    // Value of each current piece move in one search, and summed over the samples
+    private final double[] rootValues = new double[MAX_MOVES];
+    private final double[] rootTotals = new double[MAX_MOVES];
+    // Number of samples in which each move made the final beam
+    private final int[] rootHits = new int[MAX_MOVES];
+
+    // Boards of the current and the next ply, swapped after each ply
+    private NextState[] beam;
+    private NextState[] next;
+    private int[] beamRoot;
+    private int[] nextRoot;
+    private final double[] beamValue;
+
+    // Min-heap of the best children seen while expanding a ply
+    private final double[] heapValue;
+    private final int[] heapParent;
+    private final int[] heapPlacement;
+    private int heapSize;
+
+    private long nodes;
+    private long nanos;
+
+    public BeamSearchPlayer(Heuristic heuristic) {
+        this(heuristic, DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param heuristic board evaluation
+     * @param width number of boards kept after each piece
+     * @param depth number of pieces to look ahead past the current one
+     */
+    public BeamSearchPlayer(Heuristic heuristic, int width, int depth) {
+        super(heuristic);
+        if (width < 1) {
+            throw new IllegalArgumentException("Width must be at least 1");
+        }
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.sampler = new RandomPieceSource(0);
+        this.sampled = new int[depth];
+        beam = newBoards(width);
+        next = newBoards(width);
+        beamRoot = new int[width];
+        nextRoot = new int[width];
+        beamValue = new double[width];
+        heapValue = new double[width];
+        heapParent = new int[width];
+        heapPlacement = new int[width];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param sampler source of the upcoming pieces when getMove is not told them
+     */
+    public void setSampler(PieceSource sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * @param samples number of piece sequences to search per move when the pieces are sampled
+     */
+    public void setSamples(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("Samples must be at least 1");
+        }
+        this.samples = samples;
+    }
+
+    /**
+     * @return boards evaluated over every move so far
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return boards evaluated per second of search over every move so far
+     */
+    public double getNodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+
+    @Override
+    public int getMove(State s) {
+        if (depth == 0) {
+            // No upcoming pieces to sample, so every sample would be the same search
+            return getMove(s, sampled);
+        }
+        long start = System.nanoTime();
+        int numMoves = s.legalMoves().length;
+        Arrays.fill(rootTotals, 0, numMoves, 0);
+        Arrays.fill(rootHits, 0, numMoves, 0);
+        // The first upcoming piece goes round all pieces rather than being drawn, so every
+        // N_PIECES samples cover it exactly; the rest are drawn
+        int offset = sampler.nextPiece();
+        for (int sample = 0; sample < samples; sample++) {
+            for (int i = 0; i < depth; i++) {
+                sampled[i] = i == 0 ? (offset + sample) % State.N_PIECES : sampler.nextPiece();
+            }
+            search(s, sampled);
+            double worst = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < numMoves; i++) {
+                if (rootValues[i] != Double.NEGATIVE_INFINITY) {
+                    worst = Math.min(worst, rootValues[i]);
+                }
+            }
+            if (worst == Double.POSITIVE_INFINITY) {
+                break; // every move loses
+            }
+            for (int i = 0; i < numMoves; i++) {
+                if (rootValues[i] == Double.NEGATIVE_INFINITY) {
+                    rootTotals[i] += worst;
+                } else {
+                    rootTotals[i] += rootValues[i];
+                    rootHits[i]++;
+                }
+            }
+        }
+        // Moves that never made the beam are not played
+        for (int i = 0; i < numMoves; i++) {
+            if (rootHits[i] == 0) {
+                rootTotals[i] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        nanos += System.nanoTime() - start;
+        return bestMove(rootTotals, numMoves);
+    }
+
+    /**
+     * Best move when the upcoming pieces are known
+     * @param s current state
+     * @param upcoming pieces after the current one; only the first depth are used
+     */
+    public int getMove(State s, int[] upcoming) {
+        long start = System.nanoTime();
+        search(s, upcoming);
+        nanos += System.nanoTime() - start;
+        return bestMove(rootValues, s.legalMoves().length);
+    }
+
+    // Runs the beam over the upcoming pieces, leaving in rootValues the best final value of each
+    // current piece move, or negative infinity for moves that lost or fell out of the beam
+    private void search(State s, int[] upcoming) {
+        int numMoves = s.legalMoves().length;
+        Arrays.fill(rootValues, 0, numMoves, Double.NEGATIVE_INFINITY);
+
+        // Root ply: every move of the current piece
+        NextState root = next[0];
+        root.reset(s);
+        heapSize = 0;
+        int first = PieceTable.PIECE_START[s.getNextPiece()];
+        for (int i = 0; i < numMoves; i++) {
+            if (root.apply(i)) {
+                offer(heuristic.getValue(root), -1, first + i);
+                root.undo();
+                nodes++;
+            }
+        }
+        int count = heapSize;
+        for (int k = 0; k < count; k++) {
+            beam[k].reset(s);
+            beam[k].applyPlacement(heapPlacement[k]);
+            beamRoot[k] = heapPlacement[k] - first;
+            beamValue[k] = heapValue[k];
+        }
+
+        int plies = Math.min(depth, upcoming.length);
+        for (int p = 0; p < plies && count > 0; p++) {
+            int piece = upcoming[p];
+            int placements = PieceTable.PIECE_START[piece];
+            int n = PieceTable.PIECE_START[piece + 1] - placements;
+            heapSize = 0;
+            for (int k = 0; k < count; k++) {
+                NextState board = beam[k];
+                for (int j = 0; j < n; j++) {
+                    if (board.applyPlacement(placements + j)) {
+                        offer(heuristic.getValue(board), k, placements + j);
+                        board.undo();
+                        nodes++;
+                    }
+                }
+            }
+            if (heapSize == 0) {
+                break; // every board loses on this piece - go with the last ply
+            }
+            for (int k = 0; k < heapSize; k++) {
+                next[k].reset(beam[heapParent[k]]);
+                next[k].applyPlacement(heapPlacement[k]);
+                nextRoot[k] = beamRoot[heapParent[k]];
+                beamValue[k] = heapValue[k];
+            }
+            count = heapSize;
+            NextState[] boards = beam;
+            beam = next;
+            next = boards;
+            int[] roots = beamRoot;
+            beamRoot = nextRoot;
+            nextRoot = roots;
+        }
+
+        for (int k = 0; k < count; k++) {
+            rootValues[beamRoot[k]] = Math.max(rootValues[beamRoot[k]], beamValue[k]);
+        }
+    }
+
+    // Keeps the child if it is among the width best seen in this ply
+    private void offer(double value, int parent, int placement) {
+        if (heapSize < width) {
+            int i = heapSize++;
+            heapValue[i] = value;
+            heapParent[i] = parent;
+            heapPlacement[i] = placement;
+            siftUp(i);
+        } else if (value > heapValue[0]) {
+            heapValue[0] = value;
+            heapParent[0] = parent;
+            heapPlacement[0] = placement;
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heapValue[parent] <= heapValue[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && heapValue[left] < heapValue[smallest]) {
+                smallest = left;
+            }
+            if (right < heapSize && heapValue[right] < heapValue[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double value = heapValue[i];
+        heapValue[i] = heapValue[j];
+        heapValue[j] = value;
+        int parent = heapParent[i];
+        heapParent[i] = heapParent[j];
+        heapParent[j] = parent;
+        int placement = heapPlacement[i];
+        heapPlacement[i] = heapPlacement[j];
+        heapPlacement[j] = placement;
+    }
+
+    private static NextState[] newBoards(int n) {
+        NextState[] boards = new NextState[n];
+        for (int i = 0; i < n; i++) {
+            boards[i] = new NextState();
+        }
+        return boards;
+    }
+}
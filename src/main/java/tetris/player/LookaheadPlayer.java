@@ -0,0 +1,236 @@
+package tetris.player;
+
+import java.util.Arrays;
+
+import tetris.NextState;
+import tetris.PieceTable;
+import tetris.State;
+import tetris.heuristic.Heuristic;
+
+/**
+ * Looks past the current piece: the value of a placement is the expectation,
+ * over the 7 equally likely next pieces, of the best placement of that piece,
+ * recursively for depth pieces (expectimax). Depth 1 is a two-piece lookahead.
+ *
+ * Only the most promising placements are searched: at the root the rootWidth
+ * best moves by plain heuristic value, and below it the branching best
+ * placements of each piece. The last ply takes the best heuristic value over
+ * every placement. All of it runs on one NextState with apply/undo.
+ *
+ * With a TranspositionTable set, the value of every searched board is cached
+ * by its hash and reused when the board comes up again.
+ */
+public class LookaheadPlayer extends Player {
+    // Value of a board on which some piece can no longer be placed, below anything a heuristic reaches
+    public static final double LOSS_VALUE = -1e9;
+    public static final int DEFAULT_ROOT_WIDTH = 8;
+    public static final int DEFAULT_BRANCHING = 4;
+
+    private final int depth;
+    private final int rootWidth;
+    private final int branching;
+    private final double[] greedy = new double[MAX_MOVES];
+    private final double[] values = new double[MAX_MOVES];
+    private final int[] candidates = new int[MAX_MOVES];
+    // Lookahead of the current getMove; written before the search starts, read by the workers
+    private volatile int searchDepth;
+    // Heuristic values of the placements at each ply, per thread for parallel search
+    private final ThreadLocal<double[][]> scratch;
+    // Values of searched boards, null to search every board
+    private TranspositionTable table;
+
+    public LookaheadPlayer(Heuristic heuristic, int depth) {
+        this(heuristic, depth, DEFAULT_ROOT_WIDTH, DEFAULT_BRANCHING);
+    }
+
+    /**
+     * @param heuristic board evaluation
+     * @param depth number of pieces to look ahead past the current one, 0 for a greedy player
+     * @param rootWidth number of current piece moves to search
+     * @param branching number of placements of each later piece to search
+     */
+    public LookaheadPlayer(Heuristic heuristic, int depth, int rootWidth, int branching) {
+        super(heuristic);
+        if (depth < 0 || depth >= NextState.MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be between 0 and " + (NextState.MAX_DEPTH - 1));
+        }
+        this.depth = depth;
+        this.rootWidth = rootWidth;
+        this.branching = branching;
+        this.scratch = ThreadLocal.withInitial(() -> new double[Math.max(depth, 1)][MAX_MOVES]);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Caches searched values across the search and across moves. The table is
+     * cleared here, and must be cleared again if the heuristic weights change.
+     * @param table table to use, null to stop caching
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        if (table != null) {
+            table.clear();
+        }
+        this.table = table;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    @Override
+    public int getMove(State s) {
+        return getMove(s, depth);
+    }
+
+    /**
+     * Best move when looking the given number of pieces ahead
+     */
+    protected int getMove(State s, int lookahead) {
+        int numMoves = s.legalMoves().length;
+        if (lookahead == 0) {
+            searchDepth = 0;
+            return super.getMove(s);
+        }
+
+        // Cheap pass: plain heuristic value of every move
+        NextState board = getSearchState();
+        board.reset(s);
+        for (int i = 0; i < numMoves; i++) {
+            if (board.apply(i)) {
+                greedy[i] = leafValue(board);
+                board.undo();
+            } else {
+                greedy[i] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        int count = selectBest(greedy, numMoves, rootWidth, candidates);
+        if (count == 0) {
+            return 0; // every move loses
+        }
+
+        Arrays.fill(values, 0, numMoves, Double.NEGATIVE_INFINITY);
+        if (table != null) {
+            table.newSearch();
+        }
+        searchDepth = lookahead;
+        scoreMoves(s, candidates, count, values);
+        return bestMove(values, numMoves);
+    }
+
+    @Override
+    protected double evaluate(NextState s) {
+        return expectimax(s, searchDepth, scratch.get());
+    }
+
+    /**
+     * Expected value of the board over the next depth pieces
+     */
+    protected double expectimax(NextState s, int d, double[][] plies) {
+        if (d == 0) {
+            return leafValue(s);
+        }
+        long key = 0;
+        if (table != null) {
+            key = s.getHash();
+            double cached = table.get(key, d);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
+        }
+        double total = 0;
+        for (int piece = 0; piece < State.N_PIECES; piece++) {
+            if (isAborted()) {
+                return 0;
+            }
+            total += bestPlacement(s, piece, d, plies);
+        }
+        double value = total / State.N_PIECES;
+        if (table != null && !isAborted()) {
+            table.put(key, d, value);
+        }
+        return value;
+    }
+
+    // Value of the best placement of piece, searching d - 1 pieces further
+    private double bestPlacement(NextState s, int piece, int d, double[][] plies) {
+        int first = PieceTable.PIECE_START[piece];
+        int n = PieceTable.PIECE_START[piece + 1] - first;
+        double best = Double.NEGATIVE_INFINITY;
+
+        if (d == 1) {
+            for (int j = 0; j < n; j++) {
+                if (s.applyPlacement(first + j)) {
+                    best = Math.max(best, leafValue(s));
+                    s.undo();
+                }
+            }
+            return best == Double.NEGATIVE_INFINITY ? LOSS_VALUE : best;
+        }
+
+        // Order the placements by plain heuristic value and search only the best few
+        double[] ply = plies[d - 1];
+        for (int j = 0; j < n; j++) {
+            if (s.applyPlacement(first + j)) {
+                ply[j] = leafValue(s);
+                s.undo();
+            } else {
+                ply[j] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        for (int k = 0; k < branching; k++) {
+            int j = takeBest(ply, n);
+            if (j == -1) {
+                break;
+            }
+            s.applyPlacement(first + j);
+            best = Math.max(best, expectimax(s, d - 1, plies));
+            s.undo();
+        }
+        return best == Double.NEGATIVE_INFINITY ? LOSS_VALUE : best;
+    }
+
+    /**
+     * Whether the current search has to stop, asked before every piece pass.
+     * Values of a search cut short are not cached.
+     */
+    protected boolean isAborted() {
+        return false;
+    }
+
+    /**
+     * Heuristic value of a board at the bottom of the search
+     */
+    protected double leafValue(NextState s) {
+        return heuristic.getValue(s);
+    }
+
+    // Copies the indices of the count highest non-losing values into out, best first; values is consumed
+    private static int selectBest(double[] values, int n, int count, int[] out) {
+        int selected = 0;
+        while (selected < count) {
+            int j = takeBest(values, n);
+            if (j == -1) {
+                break;
+            }
+            out[selected++] = j;
+        }
+        return selected;
+    }
+
+    // Index of the highest non-losing value, which is then marked as taken, or -1 if none is left
+    private static int takeBest(double[] values, int n) {
+        int best = -1;
+        for (int j = 0; j < n; j++) {
+            if (values[j] != Double.NEGATIVE_INFINITY && (best == -1 || values[j] > values[best])) {
+                best = j;
+            }
+        }
+        if (best != -1) {
+            values[best] = Double.NEGATIVE_INFINITY;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,53 @@
+package tetris.player;
+
+import java.util.concurrent.RecursiveAction;
+
+import tetris.NextState;
+import tetris.State;
+
+/**
+ * Scores a range of a list of legal moves, splitting it in halves across the
+ * pool until a range is small enough to score on one thread. Each worker plays
+ * the moves on its own board, and every move writes only its own slot of
+ * values, so the result is the same as a sequential search.
+ */
+class ParallelMoveSearch extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    // Ranges this small are scored sequentially
+    static final int SEQUENTIAL_CUTOFF = 4;
+
+    private final Player player;
+    private final State state;
+    private final int[] moves;
+    private final double[] values;
+    private final int from;
+    private final int to;
+
+    ParallelMoveSearch(Player player, State state, int[] moves, double[] values, int from, int to) {
+        this.player = player;
+        this.state = state;
+        this.moves = moves;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= SEQUENTIAL_CUTOFF) {
+            // Each fork needs a board of its own, never the player's search board, which holds
+            // the calling thread's game. The player itself is shared only through scoreMove(),
+            // which must keep to the board it is given and to thread-local scratch
+            NextState s = player.workerState();
+            s.reset(state);
+            for (int i = from; i < to; i++) {
+                values[moves[i]] = player.scoreMove(s, moves[i]);
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new ParallelMoveSearch(player, state, moves, values, from, mid),
+                new ParallelMoveSearch(player, state, moves, values, mid, to));
+    }
+}
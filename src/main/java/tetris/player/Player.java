@@ -1,34 +1,101 @@
 package tetris.player;
 
+import java.util.concurrent.ForkJoinPool;
+
 import tetris.NextState;
 import tetris.State;
+import tetris.feature.IncrementalFeatures;
 import tetris.heuristic.Heuristic;
 
+/**
+ * Picks moves with a heuristic, one game at a time. A player is not thread-safe:
+ * getMove() plays candidates on a board and a values array of the player's own,
+ * so games on several threads need a player each, as GameTask does by building a
+ * Scorer, and with it a Player, per game. Only the workers of a parallel search
+ * (see setPool()) share a player, each on a board of its own.
+ */
 public class Player {
+  // most legal moves any piece has
+  static final int MAX_MOVES = 34;
+  // 0, 1, 2 ... - every legal move of a piece
+  private static final int[] ALL_MOVES = new int[MAX_MOVES];
+
+  static {
+    for (int i = 0; i < MAX_MOVES; i++) {
+      ALL_MOVES[i] = i;
+    }
+  }
+
   public Heuristic heuristic;
+  //reused for every candidate - moves are applied and undone in place
+  private final NextState searchState = new NextState();
+  //value of each legal move of the current piece
+  private final double[] values = new double[MAX_MOVES];
+  private boolean trackFeatures = false;
+  //boards for the workers of a parallel search
+  private final ThreadLocal<NextState> workerStates = ThreadLocal.withInitial(this::newSearchState);
+  //null to evaluate moves on the calling thread
+  private ForkJoinPool pool;
 
   public Player(Heuristic heuristic) {
     this.heuristic = heuristic;
   }
 
-  public int getMove(State s) {
-    int[][] legalMoves = s.legalMoves();
-    double maxValue = -Double.MAX_VALUE;
-
-    int index = -1;
+  /**
+   * Keeps the features up to date column by column as candidates are applied,
+   * instead of rescanning the board for each one. Only used when the heuristic
+   * runs on the fused extractor. Off by default: on the usual low boards a full
+   * bitboard scan is cheaper than the bookkeeping.
+   * @param track whether to track features incrementally
+   */
+  public void trackFeatures(boolean track) {
+    trackFeatures = track;
+    searchState.setIncrementalFeatures(newIncrementalFeatures());
+  }
 
-    for (int i = 0; i < legalMoves.length; i++) {
-      NextState nextState = new NextState(s);
+  /**
+   * Splits the legal moves of each piece across the pool. Meant for single
+   * games where one decision should use several cores; optimizers that already
+   * run one game per core should leave this off.
+   * @param pool pool to evaluate moves on, null to evaluate them on the calling thread
+   */
+  public void setPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
 
-      nextState.makeMove(i, legalMoves);
+  public int getMove(State s) {
+    int numMoves = s.legalMoves().length;
+    scoreMoves(s, ALL_MOVES, numMoves, values);
+    return bestMove(values, numMoves);
+  }
 
-      if (nextState.hasLost()) {
-        continue;
+  /**
+   * Scores the listed legal moves of s into values[move], in parallel if a pool is set
+   * @param s current state
+   * @param moves legal move indices to score
+   * @param count number of moves in the list
+   * @param values receives the value of each listed move
+   */
+  protected void scoreMoves(State s, int[] moves, int count, double[] values) {
+    if (pool != null && count > ParallelMoveSearch.SEQUENTIAL_CUTOFF) {
+      pool.invoke(new ParallelMoveSearch(this, s, moves, values, 0, count));
+    } else {
+      searchState.reset(s);
+      for (int i = 0; i < count; i++) {
+        values[moves[i]] = scoreMove(searchState, moves[i]);
       }
+    }
+  }
 
-      double val = heuristic.getValue(nextState);
-      if (val > maxValue) {
-        maxValue = val;
+  /**
+   * @return index of the highest value, the first on ties, or 0 if every move loses
+   */
+  protected static int bestMove(double[] values, int numMoves) {
+    double maxValue = -Double.MAX_VALUE;
+    int index = -1;
+    for (int i = 0; i < numMoves; i++) {
+      if (values[i] > maxValue) {
+        maxValue = values[i];
         index = i;
       }
     }
@@ -40,4 +107,54 @@ public class Player {
 
     return index;
   }
+
+  /**
+   * Board reused by scoreMoves on the calling thread; subclasses may use it between calls
+   */
+  protected NextState getSearchState() {
+    return searchState;
+  }
+
+  /**
+   * Value of playing the move-th legal move of the next piece on s, which is left unchanged.
+   * Must only touch s, as the parallel search calls it from several threads.
+   * @return the value, or negative infinity if the move loses
+   */
+  double scoreMove(NextState s, int move) {
+    if (!s.apply(move)) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    double val = evaluate(s);
+    s.undo();
+    return val;
+  }
+
+  /**
+   * Value of the board right after a move. Subclasses can search deeper from here,
+   * as long as they leave s as they found it.
+   * @param s board after the move
+   * @return value of the board
+   */
+  protected double evaluate(NextState s) {
+    return heuristic.getValue(s);
+  }
+
+  //board owned by the calling worker thread
+  NextState workerState() {
+    NextState s = workerStates.get();
+    if ((s.getIncrementalFeatures() != null) != (trackFeatures && heuristic.usesExtractor())) {
+      s.setIncrementalFeatures(newIncrementalFeatures());
+    }
+    return s;
+  }
+
+  private NextState newSearchState() {
+    NextState s = new NextState();
+    s.setIncrementalFeatures(newIncrementalFeatures());
+    return s;
+  }
+
+  private IncrementalFeatures newIncrementalFeatures() {
+    return trackFeatures && heuristic.usesExtractor() ? new IncrementalFeatures() : null;
+  }
 }
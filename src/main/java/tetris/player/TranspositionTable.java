@@ -0,0 +1,112 @@
+package tetris.player;
+
+/**
+ * Fixed size cache of search values keyed by NextState.getHash(), so a board
+ * reached again (by placing the same pieces in another order, or on the next
+ * move) is not searched twice. Entries live in preallocated primitive arrays
+ * and nothing is allocated after construction.
+ *
+ * Each hash maps to one slot. A new entry replaces the old one if the old one
+ * was stored before the last newSearch(), or the new one was searched at least
+ * as deep, whether or not the keys match. Slots are guarded by a fixed set of locks
+ * (striping), so one table can be shared by the workers of a parallel search;
+ * a table per thread never contends.
+ *
+ * Values depend on the heuristic weights, so clear() the table when they change.
+ */
+public class TranspositionTable {
+    private static final int STRIPES = 64;
+    private static final byte EMPTY = -1;
+
+    private final long[] keys;
+    private final double[] values;
+    // Lookahead the value was searched with, EMPTY for a free slot
+    private final byte[] depths;
+    // Search the entry was stored in, wrapping around
+    private final byte[] ages;
+    private final int mask;
+    private final Object[] locks = new Object[STRIPES];
+    private volatile byte age;
+
+    /**
+     * @param sizeBits log2 of the number of entries; each entry takes 18 bytes
+     */
+    public TranspositionTable(int sizeBits) {
+        if (sizeBits < 0 || sizeBits > 30) {
+            throw new IllegalArgumentException("sizeBits must be between 0 and 30");
+        }
+        int size = 1 << sizeBits;
+        keys = new long[size];
+        values = new double[size];
+        depths = new byte[size];
+        ages = new byte[size];
+        mask = size - 1;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        clear();
+    }
+
+    /**
+     * @param key board hash
+     * @param depth lookahead the caller is about to search with
+     * @return the stored value if it was searched at least that deep, NaN otherwise
+     */
+    public double get(long key, int depth) {
+        int i = index(key);
+        synchronized (locks[i & (STRIPES - 1)]) {
+            if (keys[i] == key && depths[i] >= depth) {
+                return values[i];
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Stores a value unless the slot holds a deeper entry of the current search
+     * @param key board hash
+     * @param depth lookahead the value was searched with
+     * @param value searched value
+     */
+    public void put(long key, int depth, double value) {
+        int i = index(key);
+        byte current = age;
+        synchronized (locks[i & (STRIPES - 1)]) {
+            if (depths[i] == EMPTY || ages[i] != current || depth >= depths[i]) {
+                keys[i] = key;
+                values[i] = value;
+                depths[i] = (byte) depth;
+                ages[i] = current;
+            }
+        }
+    }
+
+    /**
+     * Marks the entries stored so far as old, so the next search can replace them
+     * regardless of depth. Old entries are still returned by get().
+     */
+    public void newSearch() {
+        age++;
+    }
+
+    /**
+     * Drops every entry
+     */
+    public void clear() {
+        for (int s = 0; s < STRIPES; s++) {
+            synchronized (locks[s]) {
+                for (int i = s; i < depths.length; i += STRIPES) {
+                    depths[i] = EMPTY;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return depths.length;
+    }
+
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
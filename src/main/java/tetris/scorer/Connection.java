@@ -0,0 +1,96 @@
+package tetris.scorer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line-based link between a Coordinator and an EvaluationWorker. Both ends
+ * send a PING line every HEARTBEAT milliseconds, and a read that hears
+ * nothing for TIMEOUT milliseconds fails, so a hung or unplugged peer is
+ * noticed even when no games are being played. Each link pings from a
+ * thread of its own, so a peer that stops reading only blocks its own.
+ *
+ * Protocol, one message per line:
+ *   worker:      HELLO slots
+ *   coordinator: JOB id seed maxPieces feature,feature,... weight,weight,...
+ *   worker:      RESULT id rows turns censored
+ *   worker:      FAILED id reason
+ *   either:      PING
+ */
+class Connection implements Closeable {
+    static final String HELLO = "HELLO";
+    static final String JOB = "JOB";
+    static final String RESULT = "RESULT";
+    static final String FAILED = "FAILED";
+    static final String PING = "PING";
+    static final long HEARTBEAT = 2000;
+    static final int TIMEOUT = 10000;
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final Writer writer;
+    private final ScheduledExecutorService heartbeat;
+
+    Connection(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setSoTimeout(TIMEOUT);
+        socket.setTcpNoDelay(true);
+        this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        String peer = getPeer();
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heartbeat-" + peer);
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                send(PING);
+            } catch (IOException e) {
+                close();
+            }
+        }, HEARTBEAT, HEARTBEAT, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void send(String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * @return next line other than a heartbeat, null once the peer closed the link
+     * @throws IOException if the link broke or the peer went silent for TIMEOUT
+     */
+    String read() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+        } while (PING.equals(line));
+        return line;
+    }
+
+    String getPeer() {
+        return socket.getRemoteSocketAddress().toString();
+    }
+
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package tetris.scorer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tetris.feature.Feature;
+import tetris.heuristic.Heuristic;
+
+/**
+ * Hands games to EvaluationWorker JVMs that connect to it, so one tuning run
+ * can use many machines. A game is sent as its weights, feature classes, seed
+ * and piece cap (see GameTask), and the worker sends back the rows cleared,
+ * the pieces played and whether the cap stopped it, from which the game's
+ * Scorer is rebuilt here.
+ *
+ * Each worker is given at most as many games at once as the slots it
+ * announced. A worker whose link breaks or goes silent past the heartbeat
+ * timeout is dropped, and its unfinished games go back to the front of the
+ * queue for the other workers, as does a game a worker reports as failed.
+ * A game is sent out MAX_ATTEMPTS times at most, after which it fails, so a
+ * game that breaks every worker it reaches does not go round for ever.
+ * Workers may join at any time; with none connected, games wait.
+ *
+ * Used through an EvaluationService built with it, which routes its
+ * GameTasks here and still plays any other task locally.
+ */
+public class Coordinator implements Closeable {
+    public static final int MAX_ATTEMPTS = 3;
+
+    private final ServerSocket server;
+    private final LinkedBlockingDeque<Job> pending = new LinkedBlockingDeque<>();
+    private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong redispatched = new AtomicLong();
+
+    /**
+     * @param port port workers connect to
+     */
+    public Coordinator(int port) throws IOException {
+        this.server = new ServerSocket(port);
+        Thread acceptor = new Thread(this::accept, "coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Plays a game on a worker, waiting for one to be free
+     * @return scorer holding the one game
+     * @throws ExecutionException if the game failed or was lost on MAX_ATTEMPTS workers
+     */
+    public Scorer play(GameTask task) throws InterruptedException, ExecutionException {
+        Job job = new Job(ids.incrementAndGet(), task);
+        pending.add(job);
+        return job.result.get();
+    }
+
+    /**
+     * @return a task that plays the game on a worker if it is a GameTask, else the task itself
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Callable<T> remote(Callable<T> task) {
+        if (!(task instanceof GameTask)) {
+            return task;
+        }
+        GameTask game = (GameTask) task;
+        return () -> (T) play(game);
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return workers connected now
+     */
+    public int getWorkers() {
+        return workers.size();
+    }
+
+    /**
+     * @return games handed to another worker after theirs was lost
+     */
+    public long getRedispatched() {
+        return redispatched.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Worker worker : workers) {
+            worker.die();
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Worker worker = new Worker(new Connection(socket));
+                Thread reader = new Thread(worker::read, "coordinator-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static class Job {
+        private final long id;
+        private final GameTask task;
+        private final CompletableFuture<Scorer> result = new CompletableFuture<>();
+        // Times the game was sent to a worker
+        private volatile int attempts = 0;
+
+        Job(long id, GameTask task) {
+            this.id = id;
+            this.task = task;
+        }
+
+        String toLine() {
+            Heuristic heuristic = task.getHeuristic();
+            StringBuilder line = new StringBuilder(Connection.JOB);
+            line.append(' ').append(id).append(' ').append(task.getSeed()).append(' ').append(task.getMaxPieces());
+            char separator = ' ';
+            for (Feature feature : heuristic.getFeatures()) {
+                line.append(separator).append(feature.getClass().getName());
+                separator = ',';
+            }
+            separator = ' ';
+            for (double weight : heuristic.getWeights()) {
+                line.append(separator).append(Double.toString(weight));
+                separator = ',';
+            }
+            return line.toString();
+        }
+    }
+
+    // One connected worker: its reader thread takes results in, its dispatcher thread sends games out
+    private class Worker {
+        private final Connection connection;
+        private final Map<Long, Job> running = new ConcurrentHashMap<>();
+        private Semaphore free;
+        private Thread dispatcher;
+        private volatile boolean dead = false;
+
+        Worker(Connection connection) {
+            this.connection = connection;
+        }
+
+        void read() {
+            try {
+                String[] hello = connection.read().split(" ");
+                if (!hello[0].equals(Connection.HELLO)) {
+                    throw new IOException("Expected " + Connection.HELLO + ", got " + hello[0]);
+                }
+                int slots = Integer.parseInt(hello[1]);
+                free = new Semaphore(slots);
+                workers.add(this);
+                dispatcher = new Thread(this::dispatch, "dispatcher-" + connection.getPeer());
+                dispatcher.setDaemon(true);
+                dispatcher.start();
+                System.out.println("Worker " + connection.getPeer() + " joined with " + slots + " slots");
+
+                String line;
+                while ((line = connection.read()) != null) {
+                    String[] fields = line.split(" ", 3);
+                    if (fields[0].equals(Connection.FAILED)) {
+                        String reason = fields.length > 2 ? fields[2] : "no reason given";
+                        Job job = running.get(Long.parseLong(fields[1]));
+                        if (job != null) {
+                            requeue(job, "failed on " + connection.getPeer() + ": " + reason);
+                            free.release();
+                        }
+                        continue;
+                    }
+                    if (!fields[0].equals(Connection.RESULT)) {
+                        continue;
+                    }
+                    fields = line.split(" ");
+                    Job job = running.remove(Long.parseLong(fields[1]));
+                    if (job == null) {
+                        continue;
+                    }
+                    free.release();
+                    Scorer scorer = new Scorer(job.task.getHeuristic());
+                    scorer.addGame(job.task.getSeed(), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                            Boolean.parseBoolean(fields[4]));
+                    job.result.complete(scorer);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!dead) {
+                    System.err.println("Worker " + connection.getPeer() + " lost: " + e);
+                }
+            }
+            die();
+        }
+
+        void dispatch() {
+            try {
+                while (!dead) {
+                    free.acquire();
+                    Job job = pending.take();
+                    running.put(job.id, job);
+                    if (dead) {
+                        // Never sent, so it does not count as an attempt
+                        if (running.remove(job.id) != null) {
+                            pending.addFirst(job);
+                        }
+                        return;
+                    }
+                    job.attempts++;
+                    connection.send(job.toLine());
+                }
+            } catch (InterruptedException e) {
+                // Dropped while waiting for a slot or a game
+            } catch (IOException e) {
+                die();
+            }
+        }
+
+        void die() {
+            dead = true;
+            workers.remove(this);
+            connection.close();
+            if (dispatcher != null) {
+                dispatcher.interrupt();
+            }
+            for (Job job : new ArrayList<>(running.values())) {
+                requeue(job, "lost with " + connection.getPeer());
+            }
+        }
+
+        // Puts the game back first in line, or fails it once it used up its attempts, unless a
+        // result or another requeue got to it first
+        private void requeue(Job job, String reason) {
+            if (running.remove(job.id) == null || job.result.isDone()) {
+                return;
+            }
+            if (job.attempts >= MAX_ATTEMPTS) {
+                job.result.completeExceptionally(new IOException("Game " + job.id + " " + reason
+                        + ", giving up after " + job.attempts + " attempts"));
+                return;
+            }
+            redispatched.incrementAndGet();
+            pending.addFirst(job);
+        }
+    }
+}
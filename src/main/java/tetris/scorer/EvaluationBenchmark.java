@@ -0,0 +1,99 @@
+package tetris.scorer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tetris.feature.Feature;
+import tetris.feature.HoleFeature;
+import tetris.feature.RowsClearedFeature;
+import tetris.feature.TotalHeightFeature;
+import tetris.feature.UnevenFeature;
+import tetris.heuristic.Heuristic;
+
+/**
+ * Plays the same population of games on the old per-generation pool of 100
+ * threads, on a platform EvaluationService and, on Java 21+, on a virtual one,
+ * and prints the time each took.
+ *
+ * Usage: EvaluationBenchmark [population] [games per individual] [max pieces]
+ */
+public class EvaluationBenchmark {
+    public static void main(String[] args) throws Exception {
+        int population = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int maxPieces = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        ArrayList<Feature> features = new ArrayList<>();
+        features.add(new RowsClearedFeature());
+        features.add(new TotalHeightFeature());
+        features.add(new HoleFeature());
+        features.add(new UnevenFeature());
+        // Fixed weights and seeds, so every mode plays exactly the same games
+        Random random = new Random(0);
+        List<Callable<Scorer>> tasks = new ArrayList<>();
+        for (int i = 0; i < population; i++) {
+            double[] weights = new double[features.size()];
+            for (int j = 0; j < weights.length; j++) {
+                weights[j] = random.nextDouble() * 2 - 1;
+            }
+            Heuristic heuristic = new Heuristic(features, weights);
+            for (int g = 0; g < games; g++) {
+                long seed = random.nextLong();
+                tasks.add(() -> {
+                    Scorer scorer = new Scorer(heuristic);
+                    scorer.setMaxPieces(maxPieces);
+                    scorer.play(seed);
+                    return scorer;
+                });
+            }
+        }
+
+        // Warm up the JIT before timing anything
+        run(new EvaluationService(Runtime.getRuntime().availableProcessors()), tasks);
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(100);
+        List<Future<Scorer>> futures = new ArrayList<>();
+        for (Callable<Scorer> task : tasks) {
+            futures.add(pool.submit(task));
+        }
+        long rows = 0;
+        for (Future<Scorer> future : futures) {
+            rows += future.get().getLatestScore();
+        }
+        pool.shutdown();
+        report("fixed pool of 100", tasks.size(), rows, System.nanoTime() - start);
+
+        EvaluationService platform = new EvaluationService(Runtime.getRuntime().availableProcessors());
+        start = System.nanoTime();
+        rows = run(platform, tasks);
+        report("platform, " + platform.getThreads() + " threads", tasks.size(), rows, System.nanoTime() - start);
+
+        if (EvaluationService.supportsVirtualThreads()) {
+            EvaluationService virtual = EvaluationService.newVirtual();
+            start = System.nanoTime();
+            rows = run(virtual, tasks);
+            report("virtual, " + virtual.getThreads() + " carriers", tasks.size(), rows, System.nanoTime() - start);
+        } else {
+            System.out.println("virtual: needs Java 21 or later");
+        }
+    }
+
+    private static long run(EvaluationService service, List<Callable<Scorer>> tasks) throws Exception {
+        long rows = 0;
+        for (Scorer scorer : service.invokeAll(tasks)) {
+            rows += scorer.getLatestScore();
+        }
+        return rows;
+    }
+
+    private static void report(String mode, int games, long rows, long nanos) {
+        System.out.printf("%s: %d games, %d rows in %.2fs, %.0f games/s%n",
+                mode, games, rows, nanos / 1e9, games * 1e9 / nanos);
+    }
+}
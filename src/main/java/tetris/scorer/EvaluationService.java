@@ -0,0 +1,348 @@
+package tetris.scorer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived pool that plays the games of every optimizer, so generations do
+ * not start and stop threads of their own. Tasks are submitted in batches and
+ * their results handed back in the order they finish.
+ *
+ * Waiting tasks run longest expected first: each task carries a cost, e.g. the
+ * rows its player is expected to clear, and ties run in submission order. A
+ * long game started last would otherwise hold up the end of a generation
+ * while the other cores sit idle.
+ *
+ * The shared service has one thread per processor, or the number given by the
+ * tetris.threads system property. Its threads are daemons and never need to be
+ * shut down.
+ *
+ * With tetris.virtual=true, on a Java 21+ runtime, the shared service instead
+ * starts every task on a virtual thread of its own. The JDK runs virtual
+ * threads on a carrier pool of one thread per processor (see
+ * jdk.virtualThreadScheduler.parallelism), so any number of tasks can be
+ * submitted without a platform thread each, and a task that blocks, e.g. on
+ * I/O, frees its carrier. Tasks then start in submission order and costs are
+ * ignored. Virtual threads are looked up reflectively so the code still builds
+ * for Java 8; on older runtimes the platform pool is used.
+ *
+ * With tetris.coordinator=port, the shared service instead plays its
+ * GameTasks on EvaluationWorker JVMs through a Coordinator listening on that
+ * port; other tasks still run here. Its threads then only wait on the
+ * workers, and their number, REMOTE_THREADS unless tetris.threads says
+ * otherwise, caps the games in flight across all workers.
+ */
+public class EvaluationService {
+    public static final String THREADS_PROPERTY = "tetris.threads";
+    public static final String VIRTUAL_PROPERTY = "tetris.virtual";
+    public static final String COORDINATOR_PROPERTY = "tetris.coordinator";
+    public static final int DEFAULT_COORDINATOR_PORT = 47200;
+    public static final int REMOTE_THREADS = 256;
+
+    private static EvaluationService shared;
+
+    private final ExecutorService executor;
+    private final int threads;
+    private final boolean virtual;
+    // Plays GameTasks on worker JVMs, null to play everything here
+    private final Coordinator coordinator;
+    // Submission order, to break ties between equal costs
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param threads number of games played at once
+     */
+    public EvaluationService(int threads) {
+        this(threads, null);
+    }
+
+    /**
+     * @param threads number of games played or, for GameTasks with a coordinator, waited on at once
+     * @param coordinator plays GameTasks on worker JVMs, null to play everything here
+     */
+    public EvaluationService(int threads, Coordinator coordinator) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+        this.threads = threads;
+        this.virtual = false;
+        this.coordinator = coordinator;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new DaemonThreadFactory());
+        // A thread started on demand runs the task that started it, bypassing the queue, so
+        // the first tasks of a batch would run in submission order rather than costliest first
+        pool.prestartAllCoreThreads();
+        this.executor = pool;
+    }
+
+    private EvaluationService(ExecutorService executor, int threads) {
+        this.threads = threads;
+        this.virtual = true;
+        this.coordinator = null;
+        this.executor = executor;
+    }
+
+    /**
+     * @return whether the runtime has virtual threads (Java 21+)
+     */
+    public static boolean supportsVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A service that runs every task on a virtual thread of its own
+     * @throws UnsupportedOperationException if the runtime has no virtual threads
+     */
+    public static EvaluationService newVirtual() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new EvaluationService(executor, Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+                    Runtime.getRuntime().availableProcessors()));
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the service shared by all optimizers, created on first use
+     */
+    public static synchronized EvaluationService getShared() {
+        if (shared == null) {
+            Integer port = Integer.getInteger(COORDINATOR_PROPERTY);
+            if (port != null) {
+                try {
+                    shared = new EvaluationService(Integer.getInteger(THREADS_PROPERTY, REMOTE_THREADS),
+                            new Coordinator(port));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else if (Boolean.getBoolean(VIRTUAL_PROPERTY)) {
+                if (supportsVirtualThreads()) {
+                    shared = newVirtual();
+                } else {
+                    System.err.println("Virtual threads need Java 21 or later, using a thread pool");
+                }
+            }
+            if (shared == null) {
+                shared = new EvaluationService(Integer.getInteger(THREADS_PROPERTY,
+                        Runtime.getRuntime().availableProcessors()));
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * @return number of games played at once, the carrier threads in virtual mode
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return coordinator GameTasks are played through, null if they are played here
+     */
+    public Coordinator getCoordinator() {
+        return coordinator;
+    }
+
+    /**
+     * @return an empty batch to submit tasks to
+     */
+    public <T> Batch<T> newBatch() {
+        return new Batch<>(this);
+    }
+
+    /**
+     * Submits a batch of tasks of equal cost, which run in submission order
+     * @param tasks tasks to run
+     * @return handle that yields the results as the tasks finish
+     */
+    public <T> Batch<T> submit(List<? extends Callable<T>> tasks) {
+        Batch<T> batch = newBatch();
+        for (Callable<T> task : tasks) {
+            batch.submit(task, 0);
+        }
+        return batch;
+    }
+
+    /**
+     * Submits a batch of tasks of equal cost and waits for all of it
+     * @return the result of each task, in submission order
+     * @throws ExecutionException if a task threw
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        Batch<T> batch = submit(tasks);
+        List<T> results = new ArrayList<>();
+        while (batch.hasNext()) {
+            batch.next();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            results.add(batch.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Tasks submitted together, whose results are streamed back in completion
+     * order. More tasks can be added while earlier ones run. A batch belongs to
+     * the thread that made it.
+     */
+    public static class Batch<T> {
+        private final EvaluationService service;
+        private final List<Task<T>> tasks = new ArrayList<>();
+        private final BlockingQueue<Task<T>> completed = new LinkedBlockingQueue<>();
+        private int taken = 0;
+
+        private Batch(EvaluationService service) {
+            this.service = service;
+        }
+
+        /**
+         * @param task task to run
+         * @param cost expected cost; costlier tasks start first, except in virtual mode
+         * @return index of the task in the batch
+         */
+        public int submit(Callable<T> task, double cost) {
+            Callable<T> run = service.coordinator != null ? service.coordinator.remote(task) : task;
+            Task<T> t = new Task<>(this, run, cost, service.sequence.getAndIncrement(), tasks.size());
+            tasks.add(t);
+            service.executor.execute(t);
+            return t.index;
+        }
+
+        public int size() {
+            return tasks.size();
+        }
+
+        /**
+         * @return whether a submitted task has not been taken by next() yet
+         */
+        public boolean hasNext() {
+            return taken < tasks.size();
+        }
+
+        /**
+         * Waits for the next task of the batch to finish
+         * @return index of the task, whose result is then get(index) - which throws if the task did
+         */
+        public int next() throws InterruptedException {
+            if (!hasNext()) {
+                throw new IllegalStateException("Every task of the batch was taken");
+            }
+            Task<T> task = completed.take();
+            taken++;
+            return task.index;
+        }
+
+        /**
+         * Waits for the next task of the batch to finish and hands over its
+         * result, which the batch then lets go of. Meant for batches fed for a
+         * long time, which would otherwise keep every result.
+         * @return result of the task; get() can no longer be called for it
+         * @throws ExecutionException if the task threw
+         */
+        public T take() throws InterruptedException, ExecutionException {
+            return take(next());
+        }
+
+        /**
+         * Hands over the result of a finished task, which the batch then lets go of
+         * @return result of the task; get() can no longer be called for it
+         * @throws ExecutionException if the task threw
+         */
+        public T take(int index) throws InterruptedException, ExecutionException {
+            try {
+                return get(index);
+            } finally {
+                tasks.set(index, null);
+            }
+        }
+
+        /**
+         * Cancels every task of the batch that has not finished. Tasks that already started run
+         * on, but their results are no longer handed out.
+         */
+        public void cancel() {
+            for (Task<T> task : tasks) {
+                if (task != null) {
+                    task.cancel(true);
+                }
+            }
+        }
+
+        /**
+         * @return result of a finished task
+         * @throws ExecutionException if the task threw
+         */
+        public T get(int index) throws InterruptedException, ExecutionException {
+            return tasks.get(index).get();
+        }
+    }
+
+    // A task that runs before cheaper ones and reports to its batch when done
+    private static class Task<T> extends FutureTask<T> implements Comparable<Task<?>> {
+        private final Batch<T> batch;
+        private final double cost;
+        private final long sequence;
+        private final int index;
+
+        Task(Batch<T> batch, Callable<T> callable, double cost, long sequence, int index) {
+            super(callable);
+            this.batch = batch;
+            this.cost = cost;
+            this.sequence = sequence;
+            this.index = index;
+        }
+
+        @Override
+        protected void done() {
+            batch.completed.add(this);
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            if (cost != other.cost) {
+                return cost > other.cost ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "evaluation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
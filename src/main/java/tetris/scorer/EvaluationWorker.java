@@ -0,0 +1,135 @@
+package tetris.scorer;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tetris.feature.Feature;
+import tetris.heuristic.Heuristic;
+
+/**
+ * Plays games for a Coordinator, several at once, and sends back their
+ * results. A job that cannot be read or whose game throws is reported as
+ * failed, and the worker carries on with the others. If the link to the coordinator is lost the games in hand are
+ * abandoned, the coordinator hands them to someone else, and the worker
+ * connects again once the coordinator is back.
+ *
+ * Usage: EvaluationWorker host port [slots]
+ *   slots defaults to the number of processors
+ */
+public class EvaluationWorker {
+    private static final long RETRY = 5000;
+
+    private final String host;
+    private final int port;
+    private final int slots;
+    // Feature lists by class names, shared by every heuristic that uses them
+    private final Map<String, ArrayList<Feature>> features = new ConcurrentHashMap<>();
+
+    public EvaluationWorker(String host, int port, int slots) {
+        this.host = host;
+        this.port = port;
+        this.slots = slots;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : EvaluationService.DEFAULT_COORDINATOR_PORT;
+        int slots = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        new EvaluationWorker(host, port, slots).run();
+    }
+
+    /**
+     * Serves the coordinator until the process is stopped
+     */
+    public void run() throws InterruptedException {
+        while (true) {
+            try {
+                serve();
+            } catch (IOException e) {
+                System.err.println("Lost coordinator " + host + ":" + port + ": " + e);
+            }
+            Thread.sleep(RETRY);
+        }
+    }
+
+    // Plays games for one connection to the coordinator
+    private void serve() throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(slots);
+        try (Connection connection = new Connection(new Socket(host, port))) {
+            connection.send(Connection.HELLO + " " + slots);
+            System.out.println("Connected to " + connection.getPeer() + " with " + slots + " slots");
+            String line;
+            while ((line = connection.read()) != null) {
+                String[] fields = line.split(" ");
+                if (!fields[0].equals(Connection.JOB)) {
+                    continue;
+                }
+                if (fields.length < 2) {
+                    System.err.println("Job without an id: " + line);
+                    continue;
+                }
+                String id = fields[1];
+                GameTask task;
+                try {
+                    task = new GameTask(heuristic(fields[4], fields[5]),
+                            Long.parseLong(fields[2]), Integer.parseInt(fields[3]));
+                } catch (RuntimeException e) {
+                    fail(connection, id, e);
+                    continue;
+                }
+                pool.execute(() -> {
+                    Scorer scorer;
+                    try {
+                        scorer = task.call();
+                    } catch (Throwable e) {
+                        fail(connection, id, e);
+                        return;
+                    }
+                    send(connection, Connection.RESULT + " " + id + " " + scorer.getLatestScore() + " "
+                            + scorer.turns.get(0) + " " + scorer.isLatestCensored());
+                });
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Tells the coordinator a job could not be played
+    private static void fail(Connection connection, String id, Throwable e) {
+        System.err.println("Job " + id + " failed: " + e);
+        send(connection, Connection.FAILED + " " + id + " " + e);
+    }
+
+    private static void send(Connection connection, String line) {
+        try {
+            connection.send(line);
+        } catch (IOException e) {
+            // The link is gone and the coordinator will play the game elsewhere
+        }
+    }
+
+    private Heuristic heuristic(String classes, String weights) {
+        ArrayList<Feature> list = features.computeIfAbsent(classes, names -> {
+            ArrayList<Feature> created = new ArrayList<>();
+            for (String name : names.split(",")) {
+                try {
+                    created.add((Feature) Class.forName(name).getDeclaredConstructor().newInstance());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalArgumentException("Unknown feature " + name, e);
+                }
+            }
+            return created;
+        });
+        String[] fields = weights.split(",");
+        double[] values = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = Double.parseDouble(fields[i]);
+        }
+        return new Heuristic(list, values);
+    }
+}
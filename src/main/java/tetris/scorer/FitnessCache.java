@@ -0,0 +1,109 @@
+package tetris.scorer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Games played by recently scored weight vectors, so a genome that turns up
+ * again, e.g. a child that copied a parent, builds on its earlier games rather
+ * than starting from scratch. Keys are the exact weights; the least recently
+ * used entry goes once the cache is full.
+ *
+ * Entries pool every game a genome played, so its estimate sharpens each time
+ * it is scored. Games only pool soundly if they were played on different piece
+ * sequences: with common seeds, draw new seeds for every race.
+ *
+ * Not thread-safe; meant for the thread that runs the races.
+ */
+public class FitnessCache {
+    private final int capacity;
+    private final LinkedHashMap<Key, Scorer> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity weight vectors kept at most
+     */
+    public FitnessCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, Scorer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Scorer> eldest) {
+                return size() > FitnessCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return games played so far by the weights, null if none are cached; not to be modified
+     */
+    public Scorer get(double[] weights) {
+        Scorer games = entries.get(new Key(weights));
+        if (games == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return games;
+    }
+
+    /**
+     * Replaces the games of the weights, e.g. with the earlier games plus new ones
+     * @param weights weight vector, copied
+     * @param games every game the weights played
+     */
+    public void put(double[] weights, Scorer games) {
+        entries.put(new Key(weights.clone()), games);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return lookups that found the weights
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return lookups that did not find the weights
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    // Exact weight vector; -0.0 and 0.0 differ, as in Arrays.equals
+    static final class Key {
+        private final double[] weights;
+        private final int hash;
+
+        Key(double[] weights) {
+            this.weights = weights;
+            this.hash = Arrays.hashCode(weights);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(weights, ((Key) o).weights);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
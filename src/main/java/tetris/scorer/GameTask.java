@@ -0,0 +1,51 @@
+package tetris.scorer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import tetris.heuristic.Heuristic;
+
+/**
+ * One game of a heuristic on a seeded piece sequence, played on a scorer of
+ * its own so games of one heuristic can run side by side. A game is fully
+ * described by its weights, features, seed and piece cap, so an
+ * EvaluationService with a Coordinator can hand it to a worker JVM instead
+ * of playing it here.
+ */
+public class GameTask implements Callable<Scorer> {
+    private final Heuristic heuristic;
+    private final long seed;
+    private final int maxPieces;
+
+    /**
+     * @param heuristic heuristic to play
+     * @param seed piece sequence seed, null to draw one
+     * @param maxPieces pieces at most, see Scorer.setMaxPieces()
+     */
+    public GameTask(Heuristic heuristic, Long seed, int maxPieces) {
+        this.heuristic = heuristic;
+        this.seed = seed != null ? seed : ThreadLocalRandom.current().nextLong();
+        this.maxPieces = maxPieces;
+    }
+
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    @Override
+    public Scorer call() {
+        // A Player of its own, since players are not thread-safe; the heuristic is shared
+        Scorer scorer = new Scorer(heuristic);
+        scorer.setMaxPieces(maxPieces);
+        scorer.play(seed);
+        return scorer;
+    }
+}
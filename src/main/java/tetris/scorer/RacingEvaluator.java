@@ -0,0 +1,310 @@
+package tetris.scorer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tetris.heuristic.Heuristic;
+
+/**
+ * Scores a population by racing: every candidate starts with minGames games,
+ * and whenever a candidate has no game left running it is either dropped,
+ * if its upper confidence bound on mean rows is below the mean of every
+ * elite candidate, or given another game. The games dropped candidates would
+ * have played go to the survivors, up to maxGames each, within a total of
+ * gamesPerCandidate games per candidate.
+ *
+ * Each game is a task of its own on the EvaluationService, costed by the
+ * candidate's expected or measured rows, so long games start first and are
+ * spread over the cores.
+ *
+ * Rows of a game are roughly exponentially distributed, so the standard
+ * deviation used for the bound is never taken below the mean. With the
+ * default confidence one game is then enough to drop a candidate scoring
+ * under a third of the elite.
+ *
+ * With common seeds set, the k-th game of every candidate is played on the
+ * same piece sequence, so candidates are compared on equal luck.
+ *
+ * Candidates with identical weights race once and share the result. With a
+ * FitnessCache set, candidates seen in earlier races start from the games
+ * they played there, so a known genome only plays more games while it is
+ * still in contention.
+ */
+public class RacingEvaluator {
+    public static final double DEFAULT_CONFIDENCE = 2.0;
+
+    private final EvaluationService service;
+    private final int minGames;
+    private final int maxGames;
+    private final int gamesPerCandidate;
+    private double confidence = DEFAULT_CONFIDENCE;
+    private int eliteSize = 0;
+    private int maxPieces = Integer.MAX_VALUE;
+    private long[] seeds;
+    private FitnessCache cache;
+
+    private int[] games = new int[0];
+    private int dropped;
+    private int cached;
+
+    /**
+     * @param service runs the games
+     * @param minGames games a candidate plays before it can be dropped
+     * @param maxGames games a candidate plays at most
+     * @param gamesPerCandidate average games per candidate, the budget of a race
+     */
+    public RacingEvaluator(EvaluationService service, int minGames, int maxGames, int gamesPerCandidate) {
+        if (minGames < 1 || minGames > gamesPerCandidate || gamesPerCandidate > maxGames) {
+            throw new IllegalArgumentException("Need 1 <= minGames <= gamesPerCandidate <= maxGames");
+        }
+        this.service = service;
+        this.minGames = minGames;
+        this.maxGames = maxGames;
+        this.gamesPerCandidate = gamesPerCandidate;
+    }
+
+    /**
+     * @param confidence width of the confidence bounds in standard errors
+     */
+    public void setConfidence(double confidence) {
+        this.confidence = confidence;
+    }
+
+    /**
+     * @param eliteSize number of best candidates by mean a candidate is compared
+     *     with, 0 for a tenth of the population
+     */
+    public void setEliteSize(int eliteSize) {
+        this.eliteSize = eliteSize;
+    }
+
+    /**
+     * @param maxPieces pieces per game at most, see Scorer.setMaxPieces()
+     */
+    public void setMaxPieces(int maxPieces) {
+        this.maxPieces = maxPieces;
+    }
+
+    /**
+     * @param seeds piece sequence seed of each game number, shared by every
+     *     candidate; games past the end, or every game if null, draw their own
+     */
+    public void setSeeds(long[] seeds) {
+        this.seeds = seeds;
+    }
+
+    /**
+     * Pools each candidate's games with those it played in earlier races, and
+     * stores the pooled games back afterwards. Candidates that already played
+     * enough may play no new game at all.
+     * @param cache games of recently scored weights, null to score every race afresh
+     */
+    public void setCache(FitnessCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return games each candidate of the last race was scored on, cached ones included
+     */
+    public int[] getGames() {
+        return games;
+    }
+
+    /**
+     * @return distinct candidates of the last race found in the cache
+     */
+    public int getCached() {
+        return cached;
+    }
+
+    /**
+     * @return distinct candidates dropped in the last race
+     */
+    public int getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Races the candidates, scheduling games in submission order
+     * @param candidates heuristics to score
+     * @return estimated rows of each candidate, see Scorer.getEstimatedScore()
+     */
+    public double[] evaluate(List<Heuristic> candidates) {
+        return evaluate(candidates, null);
+    }
+
+    /**
+     * Races the candidates
+     * @param candidates heuristics to score
+     * @param expected rows each candidate is expected to clear, e.g. its parents' score,
+     *     used to start the longest games first until it has played; null if unknown
+     * @return estimated rows of each candidate, see Scorer.getEstimatedScore()
+     */
+    public double[] evaluate(List<Heuristic> candidates, double[] expected) {
+        // Candidates with identical weights race once, as the first of them
+        int n = candidates.size();
+        int[] slot = new int[n];
+        List<Integer> unique = new ArrayList<>();
+        Map<FitnessCache.Key, Integer> seen = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            Integer u = seen.putIfAbsent(new FitnessCache.Key(candidates.get(i).getWeights()), unique.size());
+            if (u == null) {
+                slot[i] = unique.size();
+                unique.add(i);
+            } else {
+                slot[i] = u;
+            }
+        }
+
+        int m = unique.size();
+        int elite = eliteSize > 0 ? Math.min(eliteSize, m) : Math.max(1, m / 10);
+        Heuristic[] heuristics = new Heuristic[m];
+        Scorer[] scorers = new Scorer[m];
+        boolean[] racing = new boolean[m];
+        // Games each candidate brought from the cache, and has played or started in all
+        int[] prior = new int[m];
+        int[] submitted = new int[m];
+        int[] pending = new int[m];
+        int[] played = new int[m];
+        double[] mean = new double[m];
+        double[] upper = new double[m];
+        dropped = 0;
+        cached = 0;
+        for (int u = 0; u < m; u++) {
+            heuristics[u] = candidates.get(unique.get(u));
+            scorers[u] = new Scorer(heuristics[u]);
+            racing[u] = true;
+            Scorer known = cache == null ? null : cache.get(heuristics[u].getWeights());
+            if (known != null && !known.scores.isEmpty()) {
+                scorers[u].addAll(known);
+                prior[u] = known.scores.size();
+                submitted[u] = prior[u];
+                played[u] = prior[u];
+                mean[u] = scorers[u].getEstimatedScore();
+                upper[u] = upperBound(scorers[u]);
+                cached++;
+            }
+        }
+
+        // Every game is a task of its own; the first minGames of each candidate go in at once and,
+        // unless expected scores order them, ahead of any later game. Candidates known from the
+        // cache only play what they lack of minGames
+        EvaluationService.Batch<Scorer> batch = service.newBatch();
+        List<Integer> owners = new ArrayList<>();
+        Deque<Integer> ready = new ArrayDeque<>();
+        long budget = (long) gamesPerCandidate * m;
+        for (int u = 0; u < m; u++) {
+            double cost = prior[u] > 0 ? mean[u] : expected == null ? Double.MAX_VALUE : expected[unique.get(u)];
+            while (submitted[u] < minGames) {
+                owners.add(u);
+                batch.submit(new GameTask(heuristics[u], seed(submitted[u]++ - prior[u]), maxPieces), cost);
+                pending[u]++;
+                budget--;
+            }
+            if (pending[u] == 0) {
+                ready.add(u);
+            }
+        }
+
+        // As each game ends, drop its candidate or give it another game; candidates that need no
+        // first game are decided straight away
+        while (!ready.isEmpty() || batch.hasNext()) {
+            int u;
+            if (!ready.isEmpty()) {
+                u = ready.poll();
+            } else {
+                int task;
+                try {
+                    task = batch.next();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                u = owners.get(task);
+                pending[u]--;
+                try {
+                    scorers[u].addAll(batch.get(task));
+                    played[u]++;
+                    mean[u] = scorers[u].getEstimatedScore();
+                    upper[u] = upperBound(scorers[u]);
+                } catch (Exception e) {
+                    // A failed game does not count; its candidate is decided on the games it has
+                    e.printStackTrace();
+                }
+                if (!racing[u] || pending[u] > 0) {
+                    continue;
+                }
+            }
+            if (played[u] >= minGames && upper[u] < eliteMean(mean, played, elite)) {
+                racing[u] = false;
+                dropped++;
+            } else if (submitted[u] < maxGames && budget > 0) {
+                owners.add(u);
+                batch.submit(new GameTask(heuristics[u], seed(submitted[u]++ - prior[u]), maxPieces), mean[u]);
+                pending[u]++;
+                budget--;
+            }
+        }
+
+        if (cache != null) {
+            for (int u = 0; u < m; u++) {
+                if (played[u] > prior[u]) {
+                    cache.put(heuristics[u].getWeights(), scorers[u]);
+                }
+            }
+        }
+
+        double[] scores = new double[n];
+        games = new int[n];
+        for (int i = 0; i < n; i++) {
+            int u = slot[i];
+            games[i] = played[u];
+            scores[i] = played[u] == 0 ? 0 : scorers[u].getEstimatedScore();
+        }
+        return scores;
+    }
+
+    // Seed of the game-th game of a candidate, null to draw one
+    private Long seed(int game) {
+        return seeds != null && game < seeds.length ? seeds[game] : null;
+    }
+
+    // Upper confidence bound on the mean rows of a candidate
+    private double upperBound(Scorer scorer) {
+        int n = scorer.scores.size();
+        double mean = scorer.getEstimatedScore();
+        double squares = 0;
+        for (int score : scorer.scores) {
+            squares += (score - mean) * (score - mean);
+        }
+        double sd = n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+        return mean + confidence * Math.max(sd, mean) / Math.sqrt(n);
+    }
+
+    // The elite-th highest mean among candidates that played enough games to be dropped
+    private double eliteMean(double[] mean, int[] games, int elite) {
+        double[] best = new double[elite];
+        int count = 0;
+        for (int i = 0; i < mean.length; i++) {
+            if (games[i] < minGames) {
+                continue;
+            }
+            // Insertion into the elite highest means seen so far, kept in descending order
+            int j = Math.min(count, elite - 1);
+            if (count == elite && mean[i] <= best[j]) {
+                continue;
+            }
+            while (j > 0 && best[j - 1] < mean[i]) {
+                best[j] = best[j - 1];
+                j--;
+            }
+            best[j] = mean[i];
+            count = Math.min(count + 1, elite);
+        }
+        return count < elite ? Double.NEGATIVE_INFINITY : best[elite - 1];
+    }
+}
@@ -1,35 +1,105 @@
 package tetris.scorer;
 
 import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
 import tetris.State;
 import tetris.TFrame;
 import tetris.heuristic.Heuristic;
+import tetris.piece.PieceSource;
+import tetris.piece.RandomPieceSource;
 import tetris.player.Player;
 
 public class Scorer {
     private static final int SLEEPTIME = 300;
     protected int game;
     public ArrayList<Integer> scores;
+    // Seed of each game, null if it was played from an unseeded source
+    public ArrayList<Long> seeds;
+    // Pieces played in each game
+    public ArrayList<Integer> turns;
+    // Whether each game was stopped by a cap before it was lost
+    public ArrayList<Boolean> censored;
     public Player player;
+    private int maxPieces = Integer.MAX_VALUE;
+    private long maxTime = Long.MAX_VALUE;
 
     public Scorer(Heuristic heuristic) {
-        this.player = new Player(heuristic);
+        this(new Player(heuristic));
+    }
+
+    /**
+     * @param player player of the games, which must not be in use by another thread (see Player)
+     */
+    public Scorer(Player player) {
+        this.player = player;
         this.scores = new ArrayList<Integer>();
+        this.seeds = new ArrayList<Long>();
+        this.turns = new ArrayList<Integer>();
+        this.censored = new ArrayList<Boolean>();
         this.game = 0;
     }
 
+    /**
+     * Stops each game after the given number of pieces. Stopped games are
+     * censored: see getEstimatedScore().
+     * @param maxPieces pieces per game at most
+     */
+    public void setMaxPieces(int maxPieces) {
+        this.maxPieces = maxPieces;
+    }
+
+    /**
+     * Stops each game after the given time. Unlike a piece cap this makes
+     * scores depend on the machine and its load.
+     * @param maxTime nanoseconds per game at most
+     */
+    public void setMaxTime(long maxTime) {
+        this.maxTime = maxTime;
+    }
+
     public void play() {
         play(false);
     }
 
     public void play(boolean graphics) {
+        play(ThreadLocalRandom.current().nextLong(), graphics);
+    }
+
+    /**
+     * Plays a game whose pieces are drawn from the given seed, so it can be replayed
+     * @param seed piece sequence seed
+     */
+    public void play(long seed) {
+        play(seed, false);
+    }
+
+    public void play(long seed, boolean graphics) {
+        seeds.add(seed);
+        run(new RandomPieceSource(seed), graphics);
+    }
+
+    /**
+     * Plays a game on an arbitrary piece source, e.g. a 7-bag or a fixed sequence
+     * @param pieces piece source
+     * @param graphics whether to draw the game
+     */
+    public void play(PieceSource pieces, boolean graphics) {
+        seeds.add(pieces instanceof RandomPieceSource ? ((RandomPieceSource) pieces).getSeed() : null);
+        run(pieces, graphics);
+    }
+
+    private void run(PieceSource pieces, boolean graphics) {
         game++;
-        State state = new State();
+        State state = new State(pieces);
         if (graphics) {
             new TFrame(state);
         }
+        long start = System.nanoTime();
         while(!state.hasLost()) {
+            if (state.getTurnNumber() >= maxPieces || System.nanoTime() - start >= maxTime) {
+                break;
+            }
             int move = player.getMove(state);
             state.makeMove(move);
 
@@ -46,16 +116,77 @@ public class Scorer {
 
         int score = state.getRowsCleared();
         scores.add(score);
+        turns.add(state.getTurnNumber());
+        censored.add(!state.hasLost());
+    }
+
+    /**
+     * Adds the games of another scorer, e.g. one that played part of the games on another thread
+     * @param other scorer whose games to add
+     */
+    public void addAll(Scorer other) {
+        game += other.game;
+        scores.addAll(other.scores);
+        seeds.addAll(other.seeds);
+        turns.addAll(other.turns);
+        censored.addAll(other.censored);
+    }
+
+    /**
+     * Records a game played elsewhere, e.g. by a worker JVM
+     * @param seed piece sequence seed, null if unseeded
+     * @param score rows cleared
+     * @param turn pieces played
+     * @param censored whether the game was stopped by a cap before it was lost
+     */
+    public void addGame(Long seed, int score, int turn, boolean censored) {
+        game++;
+        seeds.add(seed);
+        scores.add(score);
+        turns.add(turn);
+        this.censored.add(censored);
     }
 
     public int getLatestScore() {
         return scores.get(scores.size() - 1);
     }
 
+    public Long getLatestSeed() {
+        return seeds.get(seeds.size() - 1);
+    }
+
+    public boolean isLatestCensored() {
+        return censored.get(censored.size() - 1);
+    }
+
+    /**
+     * Mean rows of the games played, counting capped games at what they
+     * reached, so it is biased low once games hit a cap
+     */
     public double getAverageScore() {
-        int acc = 0;
+        long acc = 0;
         for (Integer i : scores) acc += i;
         return (double) acc / scores.size();
     }
 
+    /**
+     * Expected rows of a full game, treating capped games as right-censored.
+     * Tetris games end with a roughly constant chance per piece, so game length
+     * is taken as geometric: the best estimate of that chance is losses over
+     * pieces played, and of the rows per piece total rows over pieces played,
+     * giving total rows over lost games. If no game was lost it is counted as
+     * one loss, a lower bound. Equals getAverageScore() when nothing was capped.
+     */
+    public double getEstimatedScore() {
+        long rows = 0;
+        int losses = 0;
+        for (int i = 0; i < scores.size(); i++) {
+            rows += scores.get(i);
+            if (!censored.get(i)) {
+                losses++;
+            }
+        }
+        return (double) rows / Math.max(losses, 1);
+    }
+
 }
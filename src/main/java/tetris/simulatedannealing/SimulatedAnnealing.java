@@ -1,8 +1,16 @@
 package tetris.simulatedannealing;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
 
+import tetris.checkpoint.Checkpoint;
+import tetris.checkpoint.CheckpointReader;
+import tetris.checkpoint.CheckpointWriter;
 import tetris.feature.Feature;
 import tetris.feature.HoleFeature;
 import tetris.feature.MaxHoleHeightFeature;
@@ -10,17 +18,31 @@ import tetris.feature.RowsClearedFeature;
 import tetris.feature.TotalHeightFeature;
 import tetris.feature.UnevenFeature;
 import tetris.heuristic.Heuristic;
+import tetris.scorer.EvaluationService;
+import tetris.scorer.GameTask;
 import tetris.scorer.Scorer;
 
 public class SimulatedAnnealing {
     private static final int NUM_GAMES = 5;
+    // Games are stopped here and scored as censored
+    private static final int MAX_PIECES = 100000;
+    // Play the candidate on the same piece sequences the current heuristic was scored on,
+    // drawing new ones (and rescoring the current heuristic) every SEED_REFRESH iterations
+    private static final boolean COMMON_SEEDS = true;
+    private static final int SEED_REFRESH = 10;
+    private long[] seeds;
     private static final int NUM_ITERATIONS = 100;
+    // State after each iteration is appended here, and a run picks up from the last one
+    private static final String CHECKPOINT_FILE = "experiments/annealing.ckpt";
+    private static final String OPTIMIZER = "SimulatedAnnealing";
     private Scheduler scheduler;
     private double currentScore;
     private Heuristic heuristic;
     private static final ArrayList<Feature> FEATURES = new ArrayList<>();
     private int iteration;
+    // Reseeded at every checkpoint, so a resumed run draws what an uninterrupted one would
     private Random random;
+    private CheckpointWriter checkpoints;
 
     public SimulatedAnnealing() {
         this.currentScore = 0;
@@ -35,6 +57,23 @@ public class SimulatedAnnealing {
         this.iteration = 0;
         this.scheduler = new Scheduler();
         this.heuristic = new Heuristic(FEATURES);
+
+        File checkpointFile = new File(CHECKPOINT_FILE);
+        checkpointFile.getParentFile().mkdirs();
+        try {
+            Checkpoint checkpoint = CheckpointReader.readOrSetAside(checkpointFile, OPTIMIZER, FEATURES);
+            if (checkpoint != null) {
+                heuristic = new Heuristic(FEATURES, checkpoint.positions[0]);
+                currentScore = checkpoint.scores[0];
+                seeds = checkpoint.seeds;
+                iteration = checkpoint.iteration;
+                random = new Random(checkpoint.randomSeed);
+                System.out.println("Resumed from iteration " + iteration);
+            }
+            checkpoints = new CheckpointWriter(checkpointFile, OPTIMIZER, FEATURES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot checkpoint to " + checkpointFile, e);
+        }
     }
 
     public static void main(String[] args) {
@@ -43,19 +82,37 @@ public class SimulatedAnnealing {
     }
 
     private void run() {
-        do {
+        try {
+            anneal();
+        } finally {
+            if (checkpoints != null) {
+                try {
+                    checkpoints.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void anneal() {
+        while (iteration < NUM_ITERATIONS) {
             double temperature = scheduler.getTemp(iteration);
             if (temperature == 0.0) {
                 System.out.println("Done!");
                 return;
             }
 
-            Heuristic nextHeuristic = getNextHeuristic(heuristic);
-            Scorer scorer = new Scorer(nextHeuristic);
-            for (int i = 0; i < NUM_GAMES; i++) {
-                scorer.play();
+            if (COMMON_SEEDS && iteration % SEED_REFRESH == 0) {
+                seeds = new long[NUM_GAMES];
+                for (int i = 0; i < NUM_GAMES; i++) {
+                    seeds[i] = random.nextLong();
+                }
+                currentScore = score(heuristic);
             }
-            double score = scorer.getAverageScore();
+
+            Heuristic nextHeuristic = getNextHeuristic(heuristic);
+            double score = score(nextHeuristic);
 
             if (accept(temperature, score, currentScore)) {
                 heuristic = nextHeuristic;
@@ -63,7 +120,47 @@ public class SimulatedAnnealing {
             }
             log();
             iteration++;
-        } while(iteration < NUM_ITERATIONS);
+            checkpoint();
+        }
+    }
+
+    /**
+     * Appends the current heuristic, its score and the piece seeds to the checkpoint file
+     */
+    private void checkpoint() {
+        if (checkpoints == null) {
+            return;
+        }
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.iteration = iteration;
+        checkpoint.randomSeed = random.nextLong();
+        random = new Random(checkpoint.randomSeed);
+        checkpoint.positions = new double[][] {heuristic.getWeights()};
+        checkpoint.scores = new double[] {currentScore};
+        checkpoint.seeds = seeds;
+        try {
+            checkpoints.append(checkpoint);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Plays the games in parallel on the shared evaluation service
+    private double score(Heuristic heuristic) {
+        List<Callable<Scorer>> games = new ArrayList<>();
+        for (int i = 0; i < NUM_GAMES; i++) {
+            games.add(new GameTask(heuristic, COMMON_SEEDS ? seeds[i] : null, MAX_PIECES));
+        }
+
+        Scorer scorer = new Scorer(heuristic);
+        try {
+            for (Scorer game : EvaluationService.getShared().invokeAll(games)) {
+                scorer.addAll(game);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return scorer.getEstimatedScore();
     }
 
     private void log() {
@@ -74,18 +171,13 @@ public class SimulatedAnnealing {
     private boolean accept(double temperature, double score, double currentScore) {
         double probAccept = Math.exp(score - currentScore / temperature);
         return (score - currentScore > 0.0)
-                || (new Random().nextDouble() <= probAccept);
+                || (random.nextDouble() <= probAccept);
     }
 
     private Heuristic getNextHeuristic(Heuristic heuristic) {
-        Double[] weights = heuristic.getWeights();
+        double[] newWeights = heuristic.getWeights().clone();
         int c = random.nextInt(FEATURES.size());
-        Double[] newWeights = new Double[weights.length];
-        for (int i = 0; i < weights.length; i++) {
-            newWeights[i] = weights[i];
-        }
-
-        newWeights[c] = newWeights[c] + random.nextDouble() - 0.5;
+        newWeights[c] += random.nextDouble() - 0.5;
 
         return new Heuristic(FEATURES, newWeights);
     }
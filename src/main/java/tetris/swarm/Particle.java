@@ -1,27 +1,29 @@
 package tetris.swarm;
 
-import tetris.Pair;
 import tetris.feature.*;
 import tetris.heuristic.Heuristic;
-import tetris.scorer.Scorer;
 
 import java.util.ArrayList;
 import java.util.Random;
-import java.util.concurrent.Callable;
 
 public class Particle {
     // Hyper-parameters:
-    public static final Double INERTIA = 0.7d; //Weight decay
-    public static final Double C1 = 2d; //Weight of individual best position
-    public static final Double C2 = 2d; //Weight of global best position
-    public static final int NUM_GAMES = 3; //Number of games to play
+    public static final double INERTIA = 0.7d; //Weight decay
+    public static final double C1 = 2d; //Weight of individual best position
+    public static final double C2 = 2d; //Weight of global best position
+    public static final int NUM_GAMES = 3; //Average number of games to play, racing moves them between particles
+    public static final int MIN_GAMES = 1; //Games before a particle can be dropped from the race
+    public static final int MAX_GAMES = 10; //Games a particle plays at most
+    public static final boolean COMMON_SEEDS = true; //Whether every particle of an iteration plays the same piece sequences
+    public static final int MAX_PIECES = 100000; //Pieces per game before it is stopped and scored as censored
 
 
-    private Double[] velocity;
+    private double[] velocity;
     private Heuristic position;
     private Heuristic best;
-    private Double bestScore = 0d;
-    private final Random random = new Random();
+    private double bestScore = 0d;
+    private double lastScore = 0d;
+    private Random random = new Random();
 
     /**
      * Generates particle with random weights and velocity
@@ -30,7 +32,7 @@ public class Particle {
     public Particle(ArrayList<Feature> features) {
         position = new Heuristic(features);
         best = position;
-        velocity = new Double[features.size()];
+        velocity = new double[features.size()];
         // Initialize velocity to ~U(-1, 1)^n
         for(int i = 0; i < velocity.length; i++) {
             velocity[i] = random.nextDouble() * 2d - 1d;
@@ -38,13 +40,74 @@ public class Particle {
     }
 
     /**
-     * Plays games, then returns a pair of score and position
+     * Restores a particle, e.g. from a checkpoint
+     * @param features feature vector
+     * @param position weights of the current position
+     * @param velocity current velocity
+     * @param best weights of the individual best position
+     * @param bestScore score of the individual best position
+     * @param lastScore score of the current position
+     */
+    public Particle(ArrayList<Feature> features, double[] position, double[] velocity, double[] best,
+                    double bestScore, double lastScore) {
+        this.position = new Heuristic(features, position);
+        this.velocity = velocity;
+        this.best = new Heuristic(features, best);
+        this.bestScore = bestScore;
+        this.lastScore = lastScore;
+    }
+
+    public Heuristic getPosition() {
+        return position;
+    }
+
+    public double[] getVelocity() {
+        return velocity.clone();
+    }
+
+    public Heuristic getBest() {
+        return best;
+    }
+
+    public double getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Restarts the particle's generator, so a resumed swarm moves as it would have
+     * @param seed generator seed
+     */
+    public void reseed(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Moves the particle towards the individual and global best
      * @param globalBest global best heuristic
-     * @return Pair<Double, Heuristic> pair of score and position
+     * @return new position, to be scored and passed to setScore
      */
-    public Callable<Pair<Double, Heuristic>> play(Heuristic globalBest) {
+    public Heuristic move(Heuristic globalBest) {
         update(globalBest);
-        return new HeuristicRunner();
+        return position;
+    }
+
+    /**
+     * @return score of the last position, a guess at how long the next one plays
+     */
+    public double getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * Records the score of the current position, keeping it as the individual best if it beats it
+     * @param score score of the current position
+     */
+    public void setScore(double score) {
+        lastScore = score;
+        if(score > bestScore) {
+            best = position;
+            bestScore = score;
+        }
     }
 
     /**
@@ -52,11 +115,11 @@ public class Particle {
      * @param globalBest global best heuristic
      */
     private void update(Heuristic globalBest) {
-        Double r1 = random.nextDouble();
-        Double r2 = random.nextDouble();
-        Double[] positionWeights = position.getWeights();
-        Double[] indivBestWeights = best.getWeights();
-        Double[] globalBestWeights = globalBest.getWeights();
+        double r1 = random.nextDouble();
+        double r2 = random.nextDouble();
+        double[] positionWeights = position.getWeights();
+        double[] indivBestWeights = best.getWeights();
+        double[] globalBestWeights = globalBest.getWeights();
         //Update velocity
         for(int i = 0; i < velocity.length; i++) {
             velocity[i] = INERTIA * velocity[i]
@@ -64,27 +127,11 @@ public class Particle {
                     + r2 * C2 * (globalBestWeights[i] - positionWeights[i]);
         }
         //Calculate resultant position using position and velocity
-        Double[] resultant = new Double[velocity.length];
+        double[] resultant = new double[velocity.length];
         for(int i = 0; i < velocity.length; i++) {
             resultant[i] = velocity[i] + positionWeights[i];
         }
         //Sets position to be new heuristic
         position = new Heuristic(position.getFeatures(), resultant);
     }
-
-    private class HeuristicRunner implements Callable<Pair<Double, Heuristic>> {
-        @Override
-        public Pair<Double, Heuristic> call() {
-            Scorer scorer = new Scorer(position);
-            for(int i = 0; i < NUM_GAMES; i++) {
-                scorer.play();
-            }
-            Double score = scorer.getAverageScore();
-            if(score > bestScore) {
-                best = position;
-                bestScore = score;
-            }
-            return new Pair<>(score, position);
-        }
-    }
 }
@@ -1,28 +1,42 @@
 package tetris.swarm;
 
 import tetris.Pair;
+import tetris.checkpoint.Checkpoint;
+import tetris.checkpoint.CheckpointReader;
+import tetris.checkpoint.CheckpointWriter;
 import tetris.feature.*;
 import tetris.heuristic.Heuristic;
+import tetris.scorer.EvaluationService;
+import tetris.scorer.RacingEvaluator;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Random;
 
 public class ParticleSwarm {
     //Hyper parameters
     public static final int NUM_ITERATIONS = 1000;
     public static final int NUM_PARTICLES = 1000;
+    // State after each iteration is appended here, and a run picks up from the last one
+    public static final String CHECKPOINT_FILE = "experiments/swarm.ckpt";
+    private static final String OPTIMIZER = "ParticleSwarm";
 
     private Heuristic globalBest;
     private Double globalBestScore = 0d;
     private ArrayList<Feature> features = new ArrayList<>();
     private ArrayList<Particle> particles = new ArrayList<>();
     private int iterations = 0;
+    // Particles dropped by racing in the last iteration
+    private int dropped = 0;
+    // Reseeded at every checkpoint, along with every particle's, so a resumed run draws what an
+    // uninterrupted one would
+    private Random random = new Random();
+    private CheckpointWriter checkpoints;
 
     public ParticleSwarm() {
         //Features
@@ -42,43 +56,127 @@ public class ParticleSwarm {
 
         for(int i = 0; i < NUM_PARTICLES; i++)
             particles.add(new Particle(features));
+
+        File checkpointFile = new File(CHECKPOINT_FILE);
+        checkpointFile.getParentFile().mkdirs();
+        try {
+            Checkpoint checkpoint = CheckpointReader.readOrSetAside(checkpointFile, OPTIMIZER, features);
+            if(checkpoint != null && !resume(checkpoint))
+                System.err.println("Moved "+checkpointFile+" to "+CheckpointWriter.setAside(checkpointFile));
+            checkpoints = new CheckpointWriter(checkpointFile, OPTIMIZER, features);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot checkpoint to "+checkpointFile, e);
+        }
+    }
+
+    // Takes up the run where the checkpoint left it, returns false if the checkpoint does not fit this swarm
+    private boolean resume(Checkpoint checkpoint) {
+        if(checkpoint.positions.length != NUM_PARTICLES) {
+            System.err.println("Checkpoint has "+checkpoint.positions.length+" particles, not resuming");
+            return false;
+        }
+        particles.clear();
+        for(int i = 0; i < NUM_PARTICLES; i++) {
+            particles.add(new Particle(features, checkpoint.positions[i], checkpoint.velocities[i],
+                    checkpoint.bests[i], checkpoint.bestScores[i], checkpoint.scores[i]));
+        }
+        globalBest = new Heuristic(features, checkpoint.globalBest);
+        globalBestScore = checkpoint.globalBestScore;
+        iterations = checkpoint.iteration;
+        reseed(checkpoint.randomSeed);
+        System.out.println("Resumed from iteration "+iterations);
+        return true;
+    }
+
+    /**
+     * Appends every particle and the global best to the checkpoint file
+     */
+    private void checkpoint() {
+        if(checkpoints == null)
+            return;
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.iteration = iterations;
+        checkpoint.randomSeed = random.nextLong();
+        reseed(checkpoint.randomSeed);
+        checkpoint.positions = new double[NUM_PARTICLES][];
+        checkpoint.scores = new double[NUM_PARTICLES];
+        checkpoint.velocities = new double[NUM_PARTICLES][];
+        checkpoint.bests = new double[NUM_PARTICLES][];
+        checkpoint.bestScores = new double[NUM_PARTICLES];
+        for(int i = 0; i < NUM_PARTICLES; i++) {
+            Particle particle = particles.get(i);
+            checkpoint.positions[i] = particle.getPosition().getWeights();
+            checkpoint.scores[i] = particle.getLastScore();
+            checkpoint.velocities[i] = particle.getVelocity();
+            checkpoint.bests[i] = particle.getBest().getWeights();
+            checkpoint.bestScores[i] = particle.getBestScore();
+        }
+        checkpoint.globalBest = globalBest.getWeights();
+        checkpoint.globalBestScore = globalBestScore;
+        try {
+            checkpoints.append(checkpoint);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Restarts the swarm's generator and, from it, every particle's
+    private void reseed(long seed) {
+        random = new Random(seed);
+        for(Particle particle : particles)
+            particle.reseed(random.nextLong());
     }
 
     private void log() {
         System.out.println("Current iteration: "+iterations);
         System.out.println("Best score: "+globalBestScore);
         System.out.println("Best weights: "+Arrays.toString(globalBest.getWeights()));
+        System.out.println("Particles dropped by racing: "+dropped);
     }
 
     /**
      * Runs one iteration
      */
     private void runIteration() {
-        ArrayList<Future<Pair<Double, Heuristic>>> futureScores = new ArrayList<>();
-        ExecutorService executor = Executors.newFixedThreadPool(100);
+        ArrayList<Heuristic> positions = new ArrayList<>();
+        double[] expected = new double[NUM_PARTICLES];
 
-        // Run particle simulations concurrently
+        // Move every particle, then race the new positions concurrently
         for(int i = 0; i < NUM_PARTICLES; i++) {
-            Particle particle = particles.get(i);
-            Future<Pair<Double, Heuristic>> futureScore = executor.submit(particle.play(globalBest));
-            futureScores.add(futureScore);
+            expected[i] = particles.get(i).getLastScore();
+            positions.add(particles.get(i).move(globalBest));
         }
+        RacingEvaluator evaluator = new RacingEvaluator(EvaluationService.getShared(), Particle.MIN_GAMES, Particle.MAX_GAMES, Particle.NUM_GAMES);
+        evaluator.setMaxPieces(Particle.MAX_PIECES);
+        if(Particle.COMMON_SEEDS) {
+            evaluator.setSeeds(newSeeds());
+        }
+        // Particles that scored well last time play long games, so they start first
+        double[] scores = evaluator.evaluate(positions, expected);
 
-        // Get scores and update global bests
+        // Update individual and global bests
         for(int i = 0; i < NUM_PARTICLES; i++) {
-            try {
-                Future<Pair<Double, Heuristic>> future = futureScores.get(i);
-                Pair<Double, Heuristic> result = future.get();
-                if(result.getKey() > globalBestScore) {
-                    globalBestScore = result.getKey();
-                    globalBest = result.getValue();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+            particles.get(i).setScore(scores[i]);
+            if(scores[i] > globalBestScore) {
+                globalBestScore = scores[i];
+                globalBest = positions.get(i);
             }
         }
 
+        dropped = evaluator.getDropped();
         log();
+        checkpoint();
+    }
+
+    /**
+     * @return one piece sequence seed per game a particle can play
+     */
+    private long[] newSeeds() {
+        long[] seeds = new long[Particle.MAX_GAMES];
+        for(int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        return seeds;
     }
 
     /**
@@ -88,6 +186,13 @@ public class ParticleSwarm {
     public Pair<Double, Heuristic> run() {
         while(iterations++ < NUM_ITERATIONS)
             runIteration();
+        if(checkpoints != null) {
+            try {
+                checkpoints.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
         return new Pair<Double, Heuristic>(globalBestScore, globalBest);
     }
 